@@ -1,46 +1,315 @@
 package com.example.exercise4.View;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import android.content.Intent;
+import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.view.Gravity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.SeekBar;
+import android.widget.TextView;
 
+import com.example.exercise4.R;
+import com.example.exercise4.View.ViewObjects.HardwareStick;
 import com.example.exercise4.View.ViewObjects.JoystickView;
+import com.example.exercise4.ViewModel.ConnectionManager;
+import com.example.exercise4.ViewModel.ResponseCurve;
 import com.example.exercise4.ViewModel.ViewModel;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
 /***
- * The JoystickActivity class contains a single JoystickView whom onMoveListener is bound to
- * the ViewModel.
+ * The JoystickActivity class contains a single JoystickView whom positionMailbox is bound to
+ * the ViewModel, and sliders for the rudder (springing back to center when released) and the
+ * throttle below it.
+ * A hardware gamepad or flight stick drives the same controls: its events are read by a
+ * HardwareStick as they're dispatched, and the JoystickView only mirrors its stick.
+ * Its menu shows a debug overlay of the send path's metrics over the joystick, together with the
+ * joystick's draw time and allocations per frame (measured only while shown), and exports the
+ * send path's metrics to a file. It can also sync the controls to the display, sending a single
+ * predicted update per frame; the overlay's send interval and jitter show the difference.
+ * The ViewModel and its connection belong to the ConnectionManager, so they outlive the activity
+ * when it's recreated by a configuration change.
  */
 public class JoystickActivity extends AppCompatActivity {
 
+    // How often the debug overlay is refreshed, in milliseconds.
+    private static final int OVERLAY_REFRESH_INTERVAL = 500;
+    private static final String METRICS_FILE = "metrics.txt";
+    // The sliders' resolution: the rudder's -1 - 1 and the throttle's 0 - 1 are mapped on 0 - max.
+    private static final int RUDDER_MAX = 200;
+    private static final int THROTTLE_MAX = 100;
+    // How far ahead the stick is predicted when synced to the display, in milliseconds.
+    private static final int PREDICTION_HORIZON = 16;
+
     ViewModel vm;
+    private final HardwareStick hardwareStick = new HardwareStick();
+    private JoystickView joystick;
+    private TextView metricsOverlay;
+    private final Handler handler = new Handler();
+    private final Runnable refreshOverlay = new Runnable() {
+        @Override
+        public void run() {
+            metricsOverlay.setText(vm.getMetricsReport() + "\ndraw " + joystick.getFrameStats());
+            handler.postDelayed(this, OVERLAY_REFRESH_INTERVAL);
+        }
+    };
 
     /***
-     * Overriding the Activity's onCreate method, creating the JoystickView and the ViewModel
-     * and binding the ViewModel (implements onMoveListener) to the JoystickView.
+     * Overriding the Activity's onCreate method, creating the JoystickView, attaching to the
+     * ViewModel driving every simulator the LoginActivity was given (normally already connected
+     * by the LoginActivity, or by this activity before it was recreated) and binding the
+     * ViewModel's stick mailbox to the JoystickView.
      * @param savedInstanceState Bundle used by the Activity class.
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        // Resolved by the LoginActivity, and kept resolved when the activity is restored.
         Intent intent = getIntent();
-        vm = new ViewModel(this,
-                intent.getStringExtra("ip"),
-                intent.getStringExtra("port"));
+        vm = ConnectionManager.getInstance().connect(
+                (InetSocketAddress[]) intent.getSerializableExtra("endpoints"),
+                intent.getBooleanExtra("udp", false));
+        vm.attach(this);
         // Created the JoystickView here and not on a Layout because I had some issues binding the
         // onMoveListener using DataBinding.
-        JoystickView joystick = new JoystickView(this);
-        joystick.setOnMoveListener(vm);
-        setContentView(joystick);
+        joystick = new JoystickView(this);
+        // Touches only publish the handle's position, the ViewModel's control thread does the rest.
+        joystick.setPositionMailbox(vm.getStickMailbox());
+        // So is a hardware stick's, and it's shown on the JoystickView.
+        hardwareStick.setPositionMailbox(vm.getStickMailbox());
+        hardwareStick.setOnAxesListener(vm);
+        hardwareStick.setMirror(joystick);
+
+        metricsOverlay = new TextView(this);
+        metricsOverlay.setTextColor(Color.WHITE);
+        metricsOverlay.setBackgroundColor(Color.argb(160, 0, 0, 0));
+        metricsOverlay.setTextSize(10);
+        metricsOverlay.setVisibility(View.GONE);
+
+        LinearLayout sliders = new LinearLayout(this);
+        sliders.setOrientation(LinearLayout.HORIZONTAL);
+        addSlider(sliders, R.string.label_rudder, RUDDER_MAX, RUDDER_MAX / 2, true);
+        addSlider(sliders, R.string.label_throttle, THROTTLE_MAX,
+                (int) Math.round(vm.getThrottle() * THROTTLE_MAX), false);
+
+        FrameLayout root = new FrameLayout(this);
+        root.addView(joystick);
+        root.addView(sliders, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.WRAP_CONTENT,
+                Gravity.BOTTOM));
+        root.addView(metricsOverlay, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.WRAP_CONTENT, FrameLayout.LayoutParams.WRAP_CONTENT,
+                Gravity.TOP | Gravity.START));
+        setContentView(root);
+    }
+
+    /***
+     * Add a labeled slider to given layout, passing its position to the ViewModel as the rudder
+     * (-1 - 1) or the throttle (0 - 1).
+     * @param layout LinearLayout - the layout.
+     * @param label int - the label's string resource.
+     * @param max int - the slider's resolution.
+     * @param initial int - the slider's initial position (0 - max).
+     * @param rudder boolean - whether it's the rudder's slider, which springs back to initial.
+     */
+    private void addSlider(LinearLayout layout, int label, final int max, final int initial,
+                           final boolean rudder) {
+        TextView text = new TextView(this);
+        text.setText(getString(label));
+        SeekBar slider = new SeekBar(this);
+        slider.setMax(max);
+        slider.setProgress(initial);
+        slider.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (rudder) {
+                    vm.onRudder(2.0 * progress / max - 1);
+                } else {
+                    vm.onThrottle((double) progress / max);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                if (rudder) {
+                    seekBar.setProgress(initial);
+                }
+            }
+        });
+        layout.addView(text);
+        layout.addView(slider, new LinearLayout.LayoutParams(
+                0, LinearLayout.LayoutParams.WRAP_CONTENT, 1));
+    }
+
+    /***
+     * Overriding the Activity's dispatchGenericMotionEvent method, passing a hardware stick's
+     * movements to the HardwareStick before any view, whichever has the focus.
+     * @param event MotionEvent - the event.
+     * @return boolean - whether the event was handled.
+     */
+    @Override
+    public boolean dispatchGenericMotionEvent(MotionEvent event) {
+        return hardwareStick.onGenericMotionEvent(event) || super.dispatchGenericMotionEvent(event);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_joystick, menu);
+        // A recording started before the activity was recreated is still going.
+        menu.findItem(R.id.menuRecord).setChecked(vm.isRecording());
+        menu.findItem(R.id.menuVsync).setChecked(vm.isVsyncTick());
+        menu.findItem(R.id.menuStickCurve).setChecked(
+                vm.getStickCurve() != ResponseCurve.LINEAR);
+        return true;
+    }
+
+    /***
+     * Toggle the metrics overlay, export the metrics, start or stop recording the session, toggle
+     * syncing the controls to the display, or toggle softening the stick's center (a dead zone
+     * and an expo curve), as chosen on the menu.
+     * @param item MenuItem - the chosen item.
+     * @return boolean - whether the item was handled.
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menuMetrics) {
+            boolean show = !item.isChecked();
+            item.setChecked(show);
+            metricsOverlay.setVisibility(show ? View.VISIBLE : View.GONE);
+            handler.removeCallbacks(refreshOverlay);
+            // The joystick's frames are only measured while shown - counting allocations is slow.
+            joystick.getFrameStats().reset();
+            joystick.setMeasuring(show);
+            if (show) {
+                handler.post(refreshOverlay);
+            }
+            return true;
+        }
+        if (item.getItemId() == R.id.menuExportMetrics) {
+            exportMetrics();
+            return true;
+        }
+        if (item.getItemId() == R.id.menuRecord) {
+            boolean record = !item.isChecked();
+            item.setChecked(record);
+            if (record) {
+                startRecording();
+            } else {
+                stopRecording();
+            }
+            return true;
+        }
+        if (item.getItemId() == R.id.menuVsync) {
+            boolean vsync = !item.isChecked();
+            item.setChecked(vsync);
+            if (vsync) {
+                vm.useVsyncTick();
+                vm.setPrediction(PREDICTION_HORIZON);
+            } else {
+                vm.useDefaultTick();
+                vm.setPrediction(0);
+            }
+            return true;
+        }
+        if (item.getItemId() == R.id.menuStickCurve) {
+            boolean soft = !item.isChecked();
+            item.setChecked(soft);
+            vm.setStickCurve(soft ? ViewModel.SOFT_STICK_CURVE : ResponseCurve.LINEAR);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /***
+     * Write the metrics to the output directory, and tell the user where.
+     */
+    private void exportMetrics() {
+        File file = new File(getOutputDir(), METRICS_FILE);
+        String message;
+        try {
+            vm.exportMetrics(file);
+            message = "Metrics written to " + file.getAbsolutePath();
+        } catch (IOException e) {
+            message = "Couldn't write the metrics: " + e;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Export Metrics")
+                .setMessage(message)
+                .setNeutralButton("Close", null)
+                .show();
+    }
+
+    /***
+     * Start recording the session into a new log in the output directory, named by the time.
+     */
+    private void startRecording() {
+        File file = new File(getOutputDir(), "session-" + System.currentTimeMillis() + ".fgs");
+        try {
+            vm.startRecording(file);
+        } catch (IOException e) {
+            new AlertDialog.Builder(this)
+                    .setTitle("Record Session")
+                    .setMessage("Couldn't start recording: " + e)
+                    .setNeutralButton("Close", null)
+                    .show();
+        }
+    }
+
+    /***
+     * Stop recording the session, and tell the user where the log was written.
+     */
+    private void stopRecording() {
+        String message;
+        try {
+            File file = vm.stopRecording();
+            message = file == null ? "Nothing was recorded."
+                    : "Session recorded to " + file.getAbsolutePath();
+        } catch (IOException e) {
+            message = "Couldn't write the session: " + e;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Record Session")
+                .setMessage(message)
+                .setNeutralButton("Close", null)
+                .show();
+    }
+
+    /***
+     * @return File - the app's external files directory (readable without root), or its internal
+     *         one when there's no external storage.
+     */
+    private File getOutputDir() {
+        File dir = getExternalFilesDir(null);
+        return dir != null ? dir : getFilesDir();
     }
 
     /***
-     * Overriding the Activity's onDestroy method, sending disconnect command to the ViewModel.
+     * Overriding the Activity's onDestroy method, detaching from the ViewModel, and releasing its
+     * connection unless the activity is only being recreated.
      */
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        vm.disconnect();
+        handler.removeCallbacks(refreshOverlay);
+        joystick.setMeasuring(false);
+        vm.detach(this);
+        if (!isChangingConfigurations()) {
+            ConnectionManager.getInstance().release(vm);
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,57 +3,245 @@ package com.example.exercise4.View;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.View;
+import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
 
+import com.example.exercise4.Model.EndpointResolver;
 import com.example.exercise4.R;
+import com.example.exercise4.ViewModel.ConnectionManager;
 
-import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The login activity for the application. Get an IP and Port from the user, and if valid will call
  * to the JoystickActivity.
+ * Host names are resolved on a background thread, and the simulators connected to most recently
+ * are listed below the fields, to be filled in with a tap.
  */
 public class LoginActivity extends AppCompatActivity {
 
+    private static final String PREFERENCES = "login";
+    private static final String RECENT_KEY = "recent";
+    private static final int MAX_RECENT = 5;
+    private static final String UDP_PREFIX = "UDP ";
+    private static final String SEPARATOR = ", ";
+
+    // Shared by every LoginActivity, so its cache outlives them.
+    private static final EndpointResolver RESOLVER = new EndpointResolver();
+
+    // The recent simulators, the most recent first, each entry as described on toEntry.
+    private final List<String> recent = new ArrayList<>();
+    private boolean resolving = false;
+
     /***
-     * Overriding the Activity's onCreate method. Set the contentView as the xml layout file.
+     * Overriding the Activity's onCreate method. Set the contentView as the xml layout file, and
+     * list the recent simulators.
      * @param savedInstanceState Bundle - used by the inherited class.
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
-
+        String saved = getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+                .getString(RECENT_KEY, "");
+        for (String entry : saved.split("\n")) {
+            if (!entry.isEmpty()) {
+                recent.add(entry);
+            }
+        }
+        showRecent();
     }
 
 
     /**
      * Used by the connect button on the layout.
      * Get the strings currently typed into the IP and Port TextBoxes, validate them by trying to
-     * parse them (IP as an IP address, Port as an Integer), and if valid creates a new instance of
-     * JoystickActivity, send it the ip and port given and start it.
+     * parse them (Port as an Integer between 1 and 65535, and IP resolved as an IP address or
+     * host name on a background thread), and if valid creates a new instance of JoystickActivity,
+     * send it the resolved addresses (and whether to send over UDP) and start it.
+     * Additional simulators may be typed into the endpoints TextBox, a "host:port" per line, in
+     * which case every simulator is sent the same controls (over TCP only).
      * @param view View
      */
     public void connectCommand(View view) {
+        if (resolving) { // Already connecting.
+            return;
+        }
         String ipString = ((EditText)findViewById(R.id.ipText)).getText().toString();
         String portString = ((EditText)findViewById(R.id.portText)).getText().toString();
-        try {
-            InetAddress.getByName(ipString);
+        String endpointsString =
+                ((EditText)findViewById(R.id.endpointsText)).getText().toString();
+        final boolean udp = ((CheckBox)findViewById(R.id.udpCheck)).isChecked();
+        List<String> ips = new ArrayList<>();
+        List<String> ports = new ArrayList<>();
+        ips.add(ipString);
+        ports.add(portString);
+        for (String line : endpointsString.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            int colon = line.lastIndexOf(':');
+            if (colon <= 0) {
+                alert("Simulator \"" + line + "\" is not in host:port form.");
+                return;
+            }
+            ips.add(line.substring(0, colon).trim());
+            ports.add(line.substring(colon + 1).trim());
+        }
+        if (udp && ips.size() > 1) {
+            alert("Several simulators can only be connected over TCP.");
+            return;
+        }
+        int[] portNumbers = new int[ports.size()];
+        for (int i = 0; i < ports.size(); i++) {
             try {
-                Integer.parseInt(portString);
-                Intent intent = new Intent(this, JoystickActivity.class);
-                intent.putExtra("ip", ipString);
-                intent.putExtra("port", portString);
-                startActivity(intent);
+                portNumbers[i] = Integer.parseInt(ports.get(i));
             } catch (Exception e) {
-                alert("Port given is not an Integer.");
+                alert("Port " + ports.get(i) + " is not an Integer.");
+                return;
+            }
+            if (portNumbers[i] < EndpointResolver.MIN_PORT
+                    || portNumbers[i] > EndpointResolver.MAX_PORT) {
+                alert("Port " + ports.get(i) + " is out of range (" + EndpointResolver.MIN_PORT
+                        + " - " + EndpointResolver.MAX_PORT + ").");
+                return;
+            }
+        }
+        final String entry = toEntry(ips, ports, udp);
+        resolving = true;
+        RESOLVER.resolve(ips.toArray(new String[0]), portNumbers, new EndpointResolver.Callback() {
+            @Override
+            public void onResolved(final InetSocketAddress[] addresses) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        resolving = false;
+                        if (!isFinishing()) {
+                            connect(addresses, udp, entry);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailed(final String host, final Exception e) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        resolving = false;
+                        if (isFinishing()) {
+                            return;
+                        }
+                        if (e instanceof UnknownHostException) {
+                            alert("IP " + host + " is not a valid IP address.");
+                        } else {
+                            alert("Simulator " + host + " is not valid: " + e.getMessage());
+                        }
+                    }
+                });
             }
-        } catch (Exception e) {
-            alert("IP given is not a valid IP address.");
+        });
+    }
+
+    /**
+     * Start connecting to given simulators, so the connection is ready by the time the
+     * JoystickActivity shows, remember them as the most recent, and start the JoystickActivity.
+     * @param addresses InetSocketAddress[] - the resolved address of each simulator.
+     * @param udp boolean - whether to send over UDP.
+     * @param entry String - the simulators, as described on toEntry.
+     */
+    private void connect(InetSocketAddress[] addresses, boolean udp, String entry) {
+        ConnectionManager.getInstance().connect(addresses, udp);
+        recent.remove(entry);
+        recent.add(0, entry);
+        while (recent.size() > MAX_RECENT) {
+            recent.remove(recent.size() - 1);
+        }
+        StringBuilder saved = new StringBuilder();
+        for (String line : recent) {
+            saved.append(line).append('\n');
+        }
+        getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit()
+                .putString(RECENT_KEY, saved.toString())
+                .apply();
+        showRecent();
+
+        Intent intent = new Intent(this, JoystickActivity.class);
+        intent.putExtra("endpoints", addresses);
+        intent.putExtra("udp", udp);
+        startActivity(intent);
+    }
+
+    /**
+     * @return String - given simulators as a recent entry: the "host:port" of each, separated by
+     *         SEPARATOR, after UDP_PREFIX if sent over UDP.
+     */
+    private static String toEntry(List<String> ips, List<String> ports, boolean udp) {
+        StringBuilder entry = new StringBuilder(udp ? UDP_PREFIX : "");
+        for (int i = 0; i < ips.size(); i++) {
+            if (i > 0) {
+                entry.append(SEPARATOR);
+            }
+            entry.append(ips.get(i)).append(':').append(ports.get(i));
+        }
+        return entry.toString();
+    }
+
+    /**
+     * List the recent simulators below the fields, each filling them in when tapped.
+     */
+    private void showRecent() {
+        LinearLayout list = (LinearLayout) findViewById(R.id.recentList);
+        list.removeAllViews();
+        if (recent.isEmpty()) {
+            return;
+        }
+        TextView title = new TextView(this);
+        title.setText(getString(R.string.desc_recent));
+        list.addView(title);
+        for (final String entry : recent) {
+            TextView item = new TextView(this);
+            item.setText(entry);
+            item.setPadding(0, 16, 0, 16);
+            item.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    fill(entry);
+                }
+            });
+            list.addView(item);
+        }
+    }
+
+    /**
+     * Fill the fields in with given recent entry: the first simulator in the IP and Port
+     * TextBoxes, and the rest in the endpoints TextBox.
+     * @param entry String - the entry, as described on toEntry.
+     */
+    private void fill(String entry) {
+        boolean udp = entry.startsWith(UDP_PREFIX);
+        String[] endpoints = (udp ? entry.substring(UDP_PREFIX.length()) : entry)
+                .split(SEPARATOR);
+        int colon = endpoints[0].lastIndexOf(':');
+        ((EditText)findViewById(R.id.ipText)).setText(endpoints[0].substring(0, colon));
+        ((EditText)findViewById(R.id.portText)).setText(endpoints[0].substring(colon + 1));
+        StringBuilder rest = new StringBuilder();
+        for (int i = 1; i < endpoints.length; i++) {
+            rest.append(endpoints[i]).append('\n');
         }
+        ((EditText)findViewById(R.id.endpointsText)).setText(rest.toString());
+        ((CheckBox)findViewById(R.id.udpCheck)).setChecked(udp);
     }
 
     /**
@@ -0,0 +1,102 @@
+package com.example.exercise4.View.ViewObjects;
+
+/**
+ * Maps a hardware axis' raw values to a normalized value: either centered (-1 - 1, e.g. a stick's
+ * x or a rudder's twist) or unipolar (0 - 1, e.g. a throttle lever).
+ * A centered axis is scaled separately on each side of its center, so a stick whose center isn't
+ * halfway between its extremes still reaches both ends, and a dead zone around the center (a
+ * worn stick's jitter at rest) reads as 0. A unipolar axis has its dead zone at its rest end.
+ * The rest of the axis is stretched to still reach full deflection.
+ * Immutable, so a single instance may be used by any number of threads.
+ */
+public class AxisCalibration {
+
+    private final float min;
+    private final float center;
+    private final float max;
+    private final float deadZone;
+    private final boolean inverted;
+
+    /**
+     * AxisCalibration's constructor.
+     * @param min float - the raw value at the axis' low end.
+     * @param center float - the raw value at rest, for a centered axis (min - max).
+     * @param max float - the raw value at the axis' high end.
+     * @param deadZone float - the part of the normalized axis, from its center (or its rest end),
+     *                 which reads as 0 (0 - 1, exclusive).
+     * @param inverted boolean - whether the normalized value is flipped (e.g. a stick's y, which
+     *                 Android reports growing downwards).
+     */
+    public AxisCalibration(float min, float center, float max, float deadZone, boolean inverted) {
+        if (!(min < max) || center < min || center > max || deadZone < 0 || deadZone >= 1) {
+            throw new IllegalArgumentException("Invalid axis calibration.");
+        }
+        this.min = min;
+        this.center = center;
+        this.max = max;
+        this.deadZone = deadZone;
+        this.inverted = inverted;
+    }
+
+    /**
+     * Create the calibration of an axis reporting given range, centered halfway, with a dead zone
+     * covering the range the device itself reports as flat (noise at rest), but at least
+     * minDeadZone and at most half of the axis.
+     * @param min float - the raw value at the axis' low end.
+     * @param max float - the raw value at the axis' high end.
+     * @param flat float - the raw distance from rest which the device reports as noise.
+     * @param minDeadZone float - the smallest dead zone (0 - 1, exclusive).
+     * @param unipolar boolean - whether the axis is unipolar, making the flat range part of the
+     *                 whole range rather than of half of it.
+     * @param inverted boolean - whether the normalized value is flipped.
+     * @return AxisCalibration - the calibration.
+     */
+    public static AxisCalibration of(float min, float max, float flat, float minDeadZone,
+                                     boolean unipolar, boolean inverted) {
+        float span = unipolar ? max - min : (max - min) / 2;
+        float deadZone = span > 0 ? Math.max(minDeadZone, Math.abs(flat) / span) : minDeadZone;
+        return new AxisCalibration(min, (min + max) / 2, max, Math.min(deadZone, 0.5f),
+                inverted);
+    }
+
+    /**
+     * Normalize given raw value of a centered axis.
+     * @param raw float - the raw value.
+     * @return float - the normalized value (-1 - 1).
+     */
+    public float centered(float raw) {
+        float offset = raw - center;
+        float range = offset >= 0 ? max - center : center - min;
+        float value = range > 0 ? Math.min(1, Math.abs(offset) / range) : 0;
+        value = stretch(value);
+        return (offset < 0) != inverted ? -value : value;
+    }
+
+    /**
+     * Normalize given raw value of a unipolar axis.
+     * @param raw float - the raw value.
+     * @return float - the normalized value (0 - 1), 0 at rest.
+     */
+    public float unipolar(float raw) {
+        float value = Math.max(0, Math.min(1, (raw - min) / (max - min)));
+        return stretch(inverted ? 1 - value : value);
+    }
+
+    private float stretch(float value) {
+        return value <= deadZone ? 0 : (value - deadZone) / (1 - deadZone);
+    }
+
+    /**
+     * @return float - the dead zone.
+     */
+    public float getDeadZone() {
+        return deadZone;
+    }
+
+    /**
+     * @return boolean - whether the normalized value is flipped.
+     */
+    public boolean isInverted() {
+        return inverted;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.exercise4.View.ViewObjects;
+
+/**
+ * Measures how long a view's onDraw takes and how many objects it allocates, per frame.
+ * Only used from the UI thread.
+ */
+public class FrameStats {
+
+    private long frames = 0;
+    private long totalTime = 0;
+    private long maxTime = 0;
+    private long lastTime = 0;
+    private long allocations = 0;
+    private long allocatingFrames = 0;
+
+    /**
+     * Record a single frame.
+     * @param time long - the frame's draw time in nanoseconds.
+     * @param frameAllocations int - the number of objects allocated while drawing, or -1 if
+     *                         unknown.
+     */
+    void record(long time, int frameAllocations) {
+        frames++;
+        totalTime += time;
+        lastTime = time;
+        maxTime = Math.max(maxTime, time);
+        if (frameAllocations > 0) {
+            allocations += frameAllocations;
+            allocatingFrames++;
+        }
+    }
+
+    /**
+     * Forget every recorded frame.
+     */
+    public void reset() {
+        frames = totalTime = maxTime = lastTime = allocations = allocatingFrames = 0;
+    }
+
+    /**
+     * @return long - the number of frames recorded.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return long - the average draw time in nanoseconds.
+     */
+    public long getAverageTimeNanos() {
+        return frames == 0 ? 0 : totalTime / frames;
+    }
+
+    /**
+     * @return long - the longest draw time in nanoseconds.
+     */
+    public long getMaxTimeNanos() {
+        return maxTime;
+    }
+
+    /**
+     * @return long - the last frame's draw time in nanoseconds.
+     */
+    public long getLastTimeNanos() {
+        return lastTime;
+    }
+
+    /**
+     * @return long - the number of objects allocated by all recorded frames.
+     */
+    public long getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * @return long - the number of recorded frames which allocated anything.
+     */
+    public long getAllocatingFrames() {
+        return allocatingFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "frames=" + frames + " avg=" + getAverageTimeNanos() / 1000 + "us"
+                + " max=" + maxTime / 1000 + "us"
+                + " allocations=" + allocations + " in " + allocatingFrames + " frames";
+    }
+}
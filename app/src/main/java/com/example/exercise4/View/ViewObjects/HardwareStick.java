@@ -0,0 +1,260 @@
+package com.example.exercise4.View.ViewObjects;
+
+import android.os.Build;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a hardware gamepad or flight stick from its generic motion events: the stick from AXIS_X
+ * and AXIS_Y, the rudder from AXIS_RZ (the stick's twist, or AXIS_RUDDER for pedals) and the
+ * throttle from AXIS_THROTTLE.
+ * Every axis is normalized by its device's calibration - by default built from the range and the
+ * flat (noise) area the device reports, which can be overridden per device and axis.
+ * The stick takes the same path as the JoystickView's touches: every sample batched into an event
+ * (the historical ones and the current one) is collected into a TouchSamples batch, published to
+ * the positionMailbox (so the control tick predicts from the newest input's velocity) and given
+ * to the onSamplesListener, right as the event is dispatched - nothing waits for a frame to be
+ * drawn. The rudder and the throttle are passed to
+ * the onAxesListener. A mirroring JoystickView is then only moved to the newest position, and
+ * redraws on its next frame.
+ * Devices without the stick's axes (e.g. a separate throttle quadrant) only move their own.
+ * Used by the UI thread only, which is also the positionMailbox's single publisher.
+ */
+public class HardwareStick {
+
+    /**
+     * Gets the hardware's rudder and throttle, normalized.
+     */
+    public interface OnAxesListener {
+        void onRudder(double rudder);
+
+        void onThrottle(double throttle);
+    }
+
+    // Read as 0 even if a device reports no noise, since an idle stick still drifts a little.
+    public static final float MIN_DEAD_ZONE = 0.02f;
+
+    private static final int[] RUDDER_AXES = {MotionEvent.AXIS_RZ, MotionEvent.AXIS_RUDDER};
+
+    /**
+     * The calibrations of a single device's axes, null for the axes it doesn't have.
+     */
+    private static class Device {
+        int id;
+        AxisCalibration x;
+        AxisCalibration y;
+        int rudderAxis;
+        AxisCalibration rudder;
+        AxisCalibration throttle;
+        // The last values passed on, to only pass changes.
+        float lastRudder = Float.NaN;
+        float lastThrottle = Float.NaN;
+    }
+
+    private final List<Device> devices = new ArrayList<>();
+    private final Map<String, AxisCalibration> calibrations = new HashMap<>();
+    private final TouchSamples samples = new TouchSamples();
+
+    private PositionMailbox positionMailbox;
+    private JoystickView.OnSamplesListener onSamplesListener;
+    private OnAxesListener onAxesListener;
+    private JoystickView mirror;
+
+    /**
+     * Read given event if it's a joystick's movement. Should be given every generic motion event,
+     * e.g. from the Activity's dispatchGenericMotionEvent or a View's onGenericMotionEvent.
+     * @param event MotionEvent - the event.
+     * @return boolean - whether the event was a joystick's movement, and was handled.
+     */
+    public boolean onGenericMotionEvent(MotionEvent event) {
+        if ((event.getSource() & InputDevice.SOURCE_JOYSTICK) != InputDevice.SOURCE_JOYSTICK
+                || event.getActionMasked() != MotionEvent.ACTION_MOVE) {
+            return false;
+        }
+        Device device = device(event);
+        if (device == null) { // Disconnected since.
+            return false;
+        }
+        if (device.x != null && device.y != null) {
+            onStick(device, event);
+        }
+        if (onAxesListener != null) {
+            if (device.rudder != null) {
+                float rudder = device.rudder.centered(event.getAxisValue(device.rudderAxis));
+                if (rudder != device.lastRudder) {
+                    device.lastRudder = rudder;
+                    onAxesListener.onRudder(rudder);
+                }
+            }
+            if (device.throttle != null) {
+                float throttle = device.throttle.unipolar(
+                        event.getAxisValue(MotionEvent.AXIS_THROTTLE));
+                if (throttle != device.lastThrottle) {
+                    device.lastThrottle = throttle;
+                    onAxesListener.onThrottle(throttle);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collect the stick's samples of given event, publish them and mirror the newest.
+     * @param device Device - the event's device.
+     * @param event MotionEvent - the event.
+     */
+    private void onStick(Device device, MotionEvent event) {
+        samples.clear();
+        int history = event.getHistorySize();
+        for (int i = 0; i < history; i++) {
+            samples.add(device.x.centered(event.getHistoricalAxisValue(MotionEvent.AXIS_X, i)),
+                    device.y.centered(event.getHistoricalAxisValue(MotionEvent.AXIS_Y, i)),
+                    event.getHistoricalEventTime(i));
+        }
+        samples.add(device.x.centered(event.getAxisValue(MotionEvent.AXIS_X)),
+                device.y.centered(event.getAxisValue(MotionEvent.AXIS_Y)), event.getEventTime());
+        float x = samples.getLatestX();
+        float y = samples.getLatestY();
+        // A centered stick was let go of, like a touch's release.
+        samples.setReleased(x == 0 && y == 0);
+
+        if (positionMailbox != null) {
+            positionMailbox.publish(samples);
+        }
+        if (onSamplesListener != null) {
+            samples.setDispatchTime(System.nanoTime());
+            onSamplesListener.onSamples(samples);
+        }
+        if (mirror != null) {
+            mirror.mirror(x, y);
+        }
+    }
+
+    /**
+     * @param event MotionEvent - an event.
+     * @return Device - the calibrations of the event's device, built on its first event, or null
+     *         if it's no longer connected.
+     */
+    private Device device(MotionEvent event) {
+        int id = event.getDeviceId();
+        for (int i = 0; i < devices.size(); i++) {
+            if (devices.get(i).id == id) {
+                return devices.get(i);
+            }
+        }
+        InputDevice inputDevice = event.getDevice();
+        if (inputDevice == null) {
+            return null;
+        }
+        int source = event.getSource();
+        Device device = new Device();
+        device.id = id;
+        device.x = calibration(inputDevice, MotionEvent.AXIS_X, source, false, false);
+        // Android's y grows downwards, the stick's upwards.
+        device.y = calibration(inputDevice, MotionEvent.AXIS_Y, source, false, true);
+        for (int axis : RUDDER_AXES) {
+            device.rudder = calibration(inputDevice, axis, source, false, false);
+            if (device.rudder != null) {
+                device.rudderAxis = axis;
+                break;
+            }
+        }
+        device.throttle = calibration(inputDevice, MotionEvent.AXIS_THROTTLE, source, true,
+                false);
+        devices.add(device);
+        return device;
+    }
+
+    /**
+     * @param device InputDevice - the device.
+     * @param axis int - the axis.
+     * @param source int - the source the device reports the axis for.
+     * @param unipolar boolean - whether the axis is unipolar.
+     * @param inverted boolean - whether the axis is flipped by default.
+     * @return AxisCalibration - the calibration set for given device's axis, or else the one
+     *         built from the range it reports, or null if it doesn't have the axis.
+     */
+    private AxisCalibration calibration(InputDevice device, int axis, int source,
+                                        boolean unipolar, boolean inverted) {
+        InputDevice.MotionRange range = device.getMotionRange(axis, source);
+        if (range == null) {
+            return null;
+        }
+        AxisCalibration calibration = calibrations.get(key(deviceKey(device), axis));
+        if (calibration != null) {
+            return calibration;
+        }
+        return AxisCalibration.of(range.getMin(), range.getMax(), range.getFlat(),
+                unipolar ? 0 : MIN_DEAD_ZONE, unipolar, inverted);
+    }
+
+    /**
+     * @param device InputDevice - a device.
+     * @return String - what identifies given device across reconnections and reboots: its
+     *         descriptor (API 16 and above), or else its name.
+     */
+    public static String deviceKey(InputDevice device) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return device.getDescriptor();
+        }
+        return device.getName();
+    }
+
+    private static String key(String device, int axis) {
+        return device + ":" + axis;
+    }
+
+    /**
+     * Set the calibration of a device's axis, replacing the one built from the range it reports.
+     * @param device String - the device's deviceKey.
+     * @param axis int - the axis (MotionEvent.AXIS_X, AXIS_Y, AXIS_RZ, AXIS_RUDDER or
+     *             AXIS_THROTTLE). The stick's y is normalized growing upwards, so its calibration
+     *             should normally be inverted.
+     * @param calibration AxisCalibration - the calibration, or null for the default one.
+     */
+    public void setCalibration(String device, int axis, AxisCalibration calibration) {
+        if (calibration == null) {
+            calibrations.remove(key(device, axis));
+        } else {
+            calibrations.put(key(device, axis), calibration);
+        }
+        devices.clear(); // Rebuilt by their next events.
+    }
+
+    /**
+     * Set the mailbox the stick's batches of samples are published to, or null.
+     * @param positionMailbox PositionMailbox
+     */
+    public void setPositionMailbox(PositionMailbox positionMailbox) {
+        this.positionMailbox = positionMailbox;
+    }
+
+    /**
+     * Set the listener getting every stick sample of an event as a batch, or null.
+     * @param onSamplesListener OnSamplesListener
+     */
+    public void setOnSamplesListener(JoystickView.OnSamplesListener onSamplesListener) {
+        this.onSamplesListener = onSamplesListener;
+    }
+
+    /**
+     * Set the listener getting the rudder and the throttle, or null.
+     * @param onAxesListener OnAxesListener
+     */
+    public void setOnAxesListener(OnAxesListener onAxesListener) {
+        this.onAxesListener = onAxesListener;
+    }
+
+    /**
+     * Set the JoystickView showing the stick's position, or null.
+     * @param mirror JoystickView
+     */
+    public void setMirror(JoystickView mirror) {
+        this.mirror = mirror;
+    }
+}
@@ -1,18 +1,36 @@
 package com.example.exercise4.View.ViewObjects;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.RadialGradient;
+import android.graphics.Rect;
 import android.graphics.Shader;
+import android.os.Debug;
 import android.view.MotionEvent;
 import android.view.View;
 
 /**
  * A custom View implementing a dynamic Joystick that can be moved by the user.
- * A OnMoveListener object can be bound in order to get notifications on joystick movements.
+ * An OnPositionListener object can be bound in order to get the handle's normalized position on
+ * every movement (an OnMoveListener, getting the angle and length instead, is still supported
+ * through a MoveAdapter).
+ * For handling the movements off the UI thread, a PositionMailbox can be bound instead: every
+ * touch only publishes its batch of samples into it (the newest, the one before it and the
+ * oldest's time), leaving the filtering and the latency accounting to the taking thread.
+ * Everything which doesn't move with the handle is drawn once per size change into a cached
+ * bitmap, and the handle's and arrows' shaders are only translated to the handle's position, so
+ * drawing a frame doesn't allocate.
+ * When drawn in software, a touch only invalidates the region which can change: the handle's old
+ * and new bounds, and the arrows (whose shading follows the handle). A hardware accelerated view
+ * (the default) is always redrawn whole, which the cached base layer - a texture uploaded once -
+ * keeps cheap, so partial invalidation only helps software rendering.
+ * The handle can also mirror a position input elsewhere (e.g. a HardwareStick's), which only
+ * moves it.
  */
 public class JoystickView extends View {
 
@@ -20,6 +38,45 @@ public class JoystickView extends View {
         void onMove(double angle, int length);
     }
 
+    /**
+     * Gets the handle's position, normalized to the base: x and y are between -1 and 1, x grows
+     * to the right and y grows upwards.
+     */
+    public interface OnPositionListener {
+        void onPosition(float x, float y);
+    }
+
+    /**
+     * Adapts an OnMoveListener to the OnPositionListener contract, converting every position to
+     * the angle and the length in percent it expects. Only kept for compatibility - the
+     * conversion costs the transcendental calls and the precision OnPositionListener avoids.
+     */
+    public static class MoveAdapter implements OnPositionListener {
+
+        private final OnMoveListener onMoveListener;
+
+        /**
+         * MoveAdapter's constructor.
+         * @param onMoveListener OnMoveListener - the adapted listener.
+         */
+        public MoveAdapter(OnMoveListener onMoveListener) {
+            this.onMoveListener = onMoveListener;
+        }
+
+        @Override
+        public void onPosition(float x, float y) {
+            int length = (int) Math.round(100 * Math.sqrt(x * x + y * y));
+            onMoveListener.onMove(Math.atan2(y, x), length);
+        }
+    }
+
+    /**
+     * Gets every touch sample of a MotionEvent, including the historical ones, as a batch.
+     */
+    public interface OnSamplesListener {
+        void onSamples(TouchSamples samples);
+    }
+
     //Constants:
     private static final int BORDER_WIDTH = 3;
     private static final double HANDLE_RATIO = 0.2;
@@ -32,15 +89,31 @@ public class JoystickView extends View {
     private Paint borderPaint;
     private Paint baseMidPaint;
 
-    private OnMoveListener onMoveListener;
+    private OnPositionListener onPositionListener;
+    private OnSamplesListener onSamplesListener;
+    private PositionMailbox positionMailbox;
+    private final TouchSamples samples = new TouchSamples();
 
     private int centerX = 0;
     private int centerY = 0;
-    private int positionX = 0;
-    private int positionY = 0;
+    private float positionX = 0;
+    private float positionY = 0;
     private int handleRadios = 0;
     private int baseRadios = 0;
 
+    // Built on size change, reused by every frame:
+    private Bitmap baseLayer;
+    private final Path arrowPath = new Path();
+    private final Matrix shaderMatrix = new Matrix();
+    private Shader handleShader;
+    private Shader arrowShader;
+    // The distance from the center to the edge of the arrows' bounds.
+    private int arrowExtent = 0;
+    private final Rect dirty = new Rect();
+
+    private final FrameStats frameStats = new FrameStats();
+    private boolean measuring = false;
+
     /**
      * JoystickView's constructor.
      * @param context Context - the context on which this view is shown.
@@ -85,8 +158,10 @@ public class JoystickView extends View {
      * Resets the handle's and the base's position to the middle of the screen.
      */
     private void resetPosition() {
-        centerX = positionX = getWidth() / 2;
-        centerY = positionY = getHeight() / 2;
+        centerX = getWidth() / 2;
+        centerY = getHeight() / 2;
+        positionX = centerX;
+        positionY = centerY;
     }
 
     /**
@@ -106,42 +181,49 @@ public class JoystickView extends View {
         int d = Math.min(w, h);
         handleRadios = (int) (d / 2 * HANDLE_RATIO);
         baseRadios = (int) (d / 2 * BASE_RATIO);
+        initShaders();
+        buildArrowPath();
+        buildBaseLayer(w, h);
     }
 
     /**
-     * Get the angle on which the handle is currently on from the center of the base.
-     * @return double - the angle
-     */
-    private double getAngle() {
-        return Math.atan2(centerY - positionY, positionX - centerX);
-    }
-
-    /**
-     * Get the distance of the handle from the middle of the screen as a percent from 100%.
-     * @return int - the distance percent as an integer 1-100
-     */
-    private int getDistance() {
-        long distance = Math.round ((100 * Math.sqrt((positionX - centerX) * (positionX - centerX) +
-                (positionY - centerY) * (positionY - centerY)) / baseRadios));
-        return (int)distance;
-    }
-
-    /**
-     * Initialize the shaders for the Paints before drawing them.
+     * Initialize the shaders for the Paints.
      * (some shaders are dependent on the object coordinates, and therefore cannot be initialized
-     * at the constructor).
+     * at the constructor). The handle's and the arrows' shaders are created around (0, 0), and
+     * translated to the handle's position on every frame.
      */
     private void initShaders() {
-        int r = handleRadios / 3;
+        float r = handleRadios / 3;
         int[] c = {Color.BLACK, Color.DKGRAY};
         int[] c2 = {Color.WHITE, Color.BLACK};
         basePaint.setShader(new RadialGradient(centerX, centerY, baseRadios, c,
                 null, Shader.TileMode.MIRROR));
-        handlePaint.setShader(new RadialGradient(positionX - r,
-                positionY - r, handleRadios + r, Color.GRAY,
-                Color.BLACK, Shader.TileMode.MIRROR));
-        arrowPaint.setShader(new RadialGradient(positionX, positionY,
-                baseRadios + handleRadios, c2,null, Shader.TileMode.CLAMP));
+        handleShader = new RadialGradient(-r, -r, handleRadios + r, Color.GRAY,
+                Color.BLACK, Shader.TileMode.MIRROR);
+        handlePaint.setShader(handleShader);
+        arrowShader = new RadialGradient(0, 0, baseRadios + handleRadios, c2, null,
+                Shader.TileMode.CLAMP);
+        arrowPaint.setShader(arrowShader);
+    }
+
+    /**
+     * Draw the static layer (the background and the base of the Joystick, without the arrows whose
+     * shading follows the handle) into a new cached bitmap of given size.
+     * @param w int - the view's width.
+     * @param h int - the view's height.
+     */
+    private void buildBaseLayer(int w, int h) {
+        if (baseLayer != null) {
+            baseLayer.recycle();
+            baseLayer = null;
+        }
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        baseLayer = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(baseLayer);
+        canvas.drawColor(Color.BLACK);
+        drawBase(canvas);
     }
 
     /**
@@ -153,16 +235,16 @@ public class JoystickView extends View {
         int midRad = baseRadios / 2;
         canvas.drawCircle(centerX, centerY, baseRadios, basePaint);
         canvas.drawCircle(centerX, centerY, midRad, baseMidPaint);
-        drawArrows(canvas);
     }
 
     /**
-     * draw the arrows on the joystick base.
-     * @param canvas context's canvas
+     * Build the path of the arrows on the joystick base.
      */
-    private void drawArrows(Canvas canvas) {
-        Path arrow = new Path();
+    private void buildArrowPath() {
+        Path arrow = arrowPath;
+        arrow.reset();
         int arrowLine = baseRadios / 4, arrowDistance = handleRadios * 3;
+        arrowExtent = Math.max(arrowDistance, arrowLine) + 1;
         // Down:
         arrow.moveTo(centerX, centerY + arrowDistance);
         arrow.rLineTo(-arrowLine, -arrowLine);
@@ -182,7 +264,14 @@ public class JoystickView extends View {
         arrow.moveTo(centerX + arrowDistance, centerY);
         arrow.rLineTo(-arrowLine,-arrowLine);
         arrow.rLineTo(0, arrowLine * 2);
-        canvas.drawPath(arrow, arrowPaint);
+    }
+
+    /**
+     * draw the arrows on the joystick base, shaded around the handle.
+     * @param canvas context's canvas
+     */
+    private void drawArrows(Canvas canvas) {
+        canvas.drawPath(arrowPath, arrowPaint);
     }
 
     /**
@@ -190,74 +279,236 @@ public class JoystickView extends View {
      * @param canvas Canvas
      */
     private void drawHandle(Canvas canvas) {
-        int r = handleRadios / 3;
+        float r = handleRadios / 3;
         canvas.drawCircle(positionX, positionY, handleRadios, handlePaint);
         canvas.drawCircle(positionX - r, positionY - r, r, handleReflectionPaint);
     }
 
     /**
      * Overriding the View's onDraw method.
-     * Draw the joystick on the canvas.
+     * Draw the cached base layer, then the arrows and the handle with their shaders moved to the
+     * handle's position.
      * @param canvas Canvas
      */
     @Override
     protected void onDraw(Canvas canvas) {
-        canvas.drawColor(Color.BLACK);
-        initShaders();
-        drawBase(canvas);
+        if (baseLayer == null) { // Not laid out yet.
+            return;
+        }
+        long start = 0;
+        if (measuring) {
+            start = System.nanoTime();
+            resetAllocationCount();
+        }
+        canvas.drawBitmap(baseLayer, 0, 0, null);
+        shaderMatrix.setTranslate(positionX, positionY);
+        arrowShader.setLocalMatrix(shaderMatrix);
+        handleShader.setLocalMatrix(shaderMatrix);
+        drawArrows(canvas);
         drawHandle(canvas);
+        if (measuring) {
+            frameStats.record(System.nanoTime() - start, getAllocationCount());
+        }
+    }
+
+    /**
+     * Start or stop measuring the draw time and allocations of every frame into getFrameStats().
+     * Allocation counting slows drawing down, so this is meant for debugging only.
+     * @param measuring boolean - whether to measure.
+     */
+    public void setMeasuring(boolean measuring) {
+        if (measuring == this.measuring) {
+            return;
+        }
+        this.measuring = measuring;
+        countAllocations(measuring);
+    }
+
+    // Debug's allocation counting was deprecated in API 23, but nothing replaces its per-thread
+    // counts (Debug.getRuntimeStat only counts the whole runtime's allocations, every thread's),
+    // so it's still used here, and only here.
+
+    @SuppressWarnings("deprecation")
+    private static void countAllocations(boolean counting) {
+        if (counting) {
+            Debug.startAllocCounting();
+        } else {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void resetAllocationCount() {
+        Debug.resetThreadAllocCount();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int getAllocationCount() {
+        return Debug.getThreadAllocCount();
+    }
+
+    /**
+     * @return FrameStats - the measurements of the frames drawn while measuring.
+     */
+    public FrameStats getFrameStats() {
+        return frameStats;
     }
 
     /**
      * Overriding the View's onTouchEvent method.
      * Set the current position of the handle to the finger's position (while keeping it inside
      * the base's border). If the event is "ACTION_UP" resets the handle's position to the middle of
-     * the screen. Invoke the onMoveListener if exists, with getAngle and getDistance as parameters.
+     * the screen. Every historical sample batched into the event is collected along with the
+     * current one, at full float precision, published to the positionMailbox if exists and given
+     * to the onSamplesListener if exists.
+     * Invoke the onPositionListener if exists, with the handle's normalized position.
      * @param event MotionEvent - the event occurred
      * @return true
      */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-
-        positionX = (int) event.getX();
-        positionY = (int) event.getY();
+        float oldX = positionX;
+        float oldY = positionY;
+        samples.clear();
+        int history = event.getHistorySize();
+        for (int i = 0; i < history; i++) {
+            moveHandle(event.getHistoricalX(i), event.getHistoricalY(i));
+            addSample(event.getHistoricalEventTime(i));
+        }
+        moveHandle(event.getX(), event.getY());
 
         if (event.getAction() == MotionEvent.ACTION_UP) {
             resetPosition();
+            samples.setReleased(true);
+        }
+        addSample(event.getEventTime());
+
+        if (positionMailbox != null && baseRadios > 0) {
+            positionMailbox.publish(samples);
+        }
+        if (onSamplesListener != null && baseRadios > 0) {
+            samples.setDispatchTime(System.nanoTime());
+            onSamplesListener.onSamples(samples);
+        }
+        performClick();
+        invalidateHandle(oldX, oldY);
+        return true;
+    }
+
+    /**
+     * Move the handle to given normalized position, e.g. a hardware stick's, without publishing
+     * it anywhere. Only invalidates the handle - it's drawn on the next frame, which whoever
+     * published the position doesn't wait for.
+     * @param x float - the normalized x (-1 - 1, growing to the right).
+     * @param y float - the normalized y (-1 - 1, growing upwards).
+     */
+    public void mirror(float x, float y) {
+        if (baseRadios == 0) { // Not laid out yet.
+            return;
         }
+        float oldX = positionX;
+        float oldY = positionY;
+        moveHandle(centerX + x * baseRadios, centerY - y * baseRadios);
+        invalidateHandle(oldX, oldY);
+    }
 
+    /**
+     * When drawn in software, invalidate only the union of the handle's bounds at given old
+     * position and at its current position (the reflection is inside the handle), and the
+     * arrows' bounds. A hardware accelerated view ignores the rectangle and redraws whole, so
+     * it's simply invalidated - which is why invalidate(Rect) is deprecated since API 28, though
+     * a software redraw is still limited to it.
+     * @param oldX float - the handle's x before the touch (or the mirrored move).
+     * @param oldY float - the handle's y before the touch (or the mirrored move).
+     */
+    @SuppressWarnings("deprecation")
+    private void invalidateHandle(float oldX, float oldY) {
+        if (isHardwareAccelerated()) {
+            invalidate();
+            return;
+        }
+        // Anti aliasing may touch one pixel past the circle.
+        int pad = handleRadios + 1;
+        dirty.set((int) Math.min(oldX, positionX) - pad, (int) Math.min(oldY, positionY) - pad,
+                (int) Math.max(oldX, positionX) + pad + 1,
+                (int) Math.max(oldY, positionY) + pad + 1);
+        dirty.union(centerX - arrowExtent, centerY - arrowExtent,
+                centerX + arrowExtent, centerY + arrowExtent);
+        invalidate(dirty);
+    }
+
+    /**
+     * Set the handle's position to given point, keeping it inside the base's border.
+     * @param x float - the point's x on the view.
+     * @param y float - the point's y on the view.
+     */
+    private void moveHandle(float x, float y) {
+        positionX = x;
+        positionY = y;
         double abs = Math.sqrt((positionX - centerX) * (positionX - centerX) +
                 (positionY - centerY) * (positionY - centerY));
-
         if (abs > baseRadios) {
-            positionX = (int) ((positionX - centerX) * baseRadios / abs + centerX);
-            positionY = (int) ((positionY - centerY) * baseRadios / abs + centerY);
+            positionX = (float) ((positionX - centerX) * baseRadios / abs + centerX);
+            positionY = (float) ((positionY - centerY) * baseRadios / abs + centerY);
         }
+    }
 
-        performClick();
-        invalidate();
-        return true;
+    /**
+     * Add the handle's current position, normalized to the base, to the samples batch.
+     * @param time long - the sample's event time.
+     */
+    private void addSample(long time) {
+        if (baseRadios > 0) {
+            samples.add((positionX - centerX) / baseRadios, (centerY - positionY) / baseRadios,
+                    time);
+        }
     }
 
     /**
-     * Calling onMoveListener.onMove when clicked.
-     * @return Boolean if onMoveListener exists return true, else returns false.
+     * Calling onPositionListener.onPosition when clicked.
+     * @return Boolean if onPositionListener exists return true, else returns false.
      */
     @Override
     public boolean performClick() {
         super.performClick();
-        if (onMoveListener != null) {
-            onMoveListener.onMove(getAngle(), getDistance());
+        if (onPositionListener != null && baseRadios > 0) {
+            onPositionListener.onPosition((positionX - centerX) / baseRadios,
+                    (centerY - positionY) / baseRadios);
             return true;
         }
         return false;
     }
 
     /**
-     * Set the joystick onMoveListener to given OnMoveListener object.
+     * Set the joystick onPositionListener to given OnPositionListener object.
+     * @param onPositionListener OnPositionListener
+     */
+    public void setOnPositionListener(OnPositionListener onPositionListener) {
+        this.onPositionListener = onPositionListener;
+    }
+
+    /**
+     * Set the joystick onPositionListener to a MoveAdapter of given OnMoveListener object,
+     * replacing any OnPositionListener.
      * @param onMoveListener OnMoveListener
      */
     public void setOnMoveListener(OnMoveListener onMoveListener) {
-        this.onMoveListener = onMoveListener;
+        this.onPositionListener = onMoveListener == null ? null : new MoveAdapter(onMoveListener);
+    }
+
+    /**
+     * Set the joystick onSamplesListener to given OnSamplesListener object.
+     * @param onSamplesListener OnSamplesListener
+     */
+    public void setOnSamplesListener(OnSamplesListener onSamplesListener) {
+        this.onSamplesListener = onSamplesListener;
+    }
+
+    /**
+     * Set the mailbox every touch publishes its batch of samples to, or null.
+     * @param positionMailbox PositionMailbox
+     */
+    public void setPositionMailbox(PositionMailbox positionMailbox) {
+        this.positionMailbox = positionMailbox;
     }
 }
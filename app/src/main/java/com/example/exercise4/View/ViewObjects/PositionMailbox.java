@@ -0,0 +1,206 @@
+package com.example.exercise4.View.ViewObjects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single-slot mailbox handing the stick's raw position from the UI thread to a control thread,
+ * without locks or allocation. The UI thread only publishes, replacing whatever wasn't taken yet,
+ * and the control thread takes the newest position at its own pace and does all of the math.
+ * A raw position is x and y together with what normalizes them (e.g. the handle's offset from the
+ * base's center in pixels, scaled by the base's radius), or a batch's normalized newest sample.
+ * Along with the newest position, the sample input right before it is handed over (the batch's,
+ * or else the position published before), so the stick's velocity is the newest input's however
+ * many were published between takes. So is the time of the oldest input published since the last
+ * take, which the send it ends up in reflects.
+ * Works as a seqlock: publishing makes the version odd while the fields are written, and taking
+ * retries until it read them all under the same even version. Every field is volatile, so the
+ * reads can't be reordered around the version's.
+ * Must be published to by a single thread at a time.
+ */
+public class PositionMailbox {
+
+    /**
+     * A position taken from the mailbox. Owned by the taking thread, and refilled by every take.
+     */
+    public static class Position {
+        private float x;
+        private float y;
+        private float scale;
+        private long time;
+        private boolean released;
+        private float previousX;
+        private float previousY;
+        private long previousTime;
+        private long inputTime;
+
+        /**
+         * @return float - the raw x (growing to the right).
+         */
+        public float getX() {
+            return x;
+        }
+
+        /**
+         * @return float - the raw y (growing upwards).
+         */
+        public float getY() {
+            return y;
+        }
+
+        /**
+         * @return float - what x and y are divided by to normalize them (e.g. the base's radius).
+         */
+        public float getScale() {
+            return scale;
+        }
+
+        /**
+         * @return long - the System.nanoTime() the position was input at.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return boolean - whether the stick was released, in which case it's centered.
+         */
+        public boolean isReleased() {
+            return released;
+        }
+
+        /**
+         * @return float - the raw x of the sample input right before the position.
+         */
+        public float getPreviousX() {
+            return previousX;
+        }
+
+        /**
+         * @return float - the raw y of the sample input right before the position.
+         */
+        public float getPreviousY() {
+            return previousY;
+        }
+
+        /**
+         * @return long - the System.nanoTime() the sample before the position was input at, or 0
+         *         if it's the first position ever published.
+         */
+        public long getPreviousTime() {
+            return previousTime;
+        }
+
+        /**
+         * @return long - the System.nanoTime() of the oldest input published since the last take.
+         */
+        public long getInputTime() {
+            return inputTime;
+        }
+    }
+
+    private volatile int version = 0;
+    private volatile float x;
+    private volatile float y;
+    private volatile float scale;
+    private volatile long time;
+    private volatile boolean released;
+    private volatile float previousX;
+    private volatile float previousY;
+    private volatile long previousTime;
+    private volatile long inputTime;
+
+    // The version last taken, written by the taking thread and read by the publishing one.
+    private volatile int takenVersion = 0;
+    // The position last published, only used by the publishing thread.
+    private float lastX;
+    private float lastY;
+    private long lastTime = 0;
+
+    /**
+     * Publish a raw position, replacing the one not taken yet. The position published before is
+     * the sample before it, so both should be in the same units.
+     * @param x float - the raw x.
+     * @param y float - the raw y.
+     * @param scale float - what x and y are divided by to normalize them.
+     * @param time long - the System.nanoTime() the position was input at.
+     * @param released boolean - whether the stick was released.
+     */
+    public void publish(float x, float y, float scale, long time, boolean released) {
+        publish(x, y, scale, time, released, lastX, lastY, lastTime, time);
+    }
+
+    /**
+     * Publish the newest sample of given batch, replacing the position not taken yet.
+     * @param samples TouchSamples - the batch, normalized (a scale of 1).
+     */
+    public void publish(TouchSamples samples) {
+        int newest = samples.getCount() - 1;
+        // MotionEvent times are uptimeMillis, which is on System.nanoTime()'s clock.
+        long time = TimeUnit.MILLISECONDS.toNanos(samples.getEventTime(newest));
+        long first = TimeUnit.MILLISECONDS.toNanos(samples.getEventTime(0));
+        if (newest == 0) {
+            publish(samples.getX(newest), samples.getY(newest), 1, time, samples.isReleased(),
+                    lastX, lastY, lastTime, first);
+        } else {
+            publish(samples.getX(newest), samples.getY(newest), 1, time, samples.isReleased(),
+                    samples.getX(newest - 1), samples.getY(newest - 1),
+                    TimeUnit.MILLISECONDS.toNanos(samples.getEventTime(newest - 1)), first);
+        }
+    }
+
+    private void publish(float x, float y, float scale, long time, boolean released,
+                         float previousX, float previousY, long previousTime, long firstTime) {
+        int start = version + 1;
+        // A position not taken yet keeps its older input time. If it's taken right now, the next
+        // take is merely measured from an input a little older than its own.
+        boolean pending = takenVersion != start - 1;
+        version = start; // Odd - takers retry until it's done.
+        this.x = x;
+        this.y = y;
+        this.scale = scale;
+        this.time = time;
+        this.released = released;
+        this.previousX = previousX;
+        this.previousY = previousY;
+        this.previousTime = previousTime;
+        if (!pending) {
+            this.inputTime = firstTime;
+        }
+        version = start + 1;
+        lastX = x;
+        lastY = y;
+        lastTime = time;
+    }
+
+    /**
+     * Take the newest position, if one was published since the last take. Must be called by a
+     * single thread at a time.
+     * @param dst Position - filled with the position.
+     * @return boolean - false if nothing new was published, in which case dst is left as is.
+     */
+    public boolean take(Position dst) {
+        while (true) {
+            int before = version;
+            if (before == takenVersion) {
+                return false;
+            }
+            if ((before & 1) != 0) { // Being published.
+                Thread.yield();
+                continue;
+            }
+            dst.x = x;
+            dst.y = y;
+            dst.scale = scale;
+            dst.time = time;
+            dst.released = released;
+            dst.previousX = previousX;
+            dst.previousY = previousY;
+            dst.previousTime = previousTime;
+            dst.inputTime = inputTime;
+            if (version == before) {
+                takenVersion = before;
+                return true;
+            }
+        }
+    }
+}
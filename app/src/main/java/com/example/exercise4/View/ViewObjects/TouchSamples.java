@@ -0,0 +1,124 @@
+package com.example.exercise4.View.ViewObjects;
+
+/**
+ * A batch of timestamped stick positions, made of every sample Android batched into a single
+ * MotionEvent (the historical ones and the current one), oldest first.
+ * Positions are normalized to the joystick's base: x and y are between -1 and 1, x grows to the
+ * right and y grows upwards, and they are kept at sub-pixel precision.
+ * The JoystickView reuses a single batch for every event, so it's only valid during the
+ * OnSamplesListener call - copy whatever is needed later.
+ */
+public class TouchSamples {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private float[] x = new float[INITIAL_CAPACITY];
+    private float[] y = new float[INITIAL_CAPACITY];
+    private long[] eventTime = new long[INITIAL_CAPACITY];
+    private int count = 0;
+    private boolean released = false;
+    private long dispatchTime = 0;
+
+    /**
+     * Empty the batch, keeping its arrays.
+     */
+    void clear() {
+        count = 0;
+        released = false;
+    }
+
+    /**
+     * Add a sample to the batch, growing the arrays if needed.
+     * @param sampleX float - normalized x.
+     * @param sampleY float - normalized y.
+     * @param time long - the sample's time, in the SystemClock.uptimeMillis() time base.
+     */
+    void add(float sampleX, float sampleY, long time) {
+        if (count == x.length) {
+            x = grow(x);
+            y = grow(y);
+            long[] grownTime = new long[eventTime.length * 2];
+            System.arraycopy(eventTime, 0, grownTime, 0, count);
+            eventTime = grownTime;
+        }
+        x[count] = sampleX;
+        y[count] = sampleY;
+        eventTime[count] = time;
+        count++;
+    }
+
+    private float[] grow(float[] array) {
+        float[] grown = new float[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, count);
+        return grown;
+    }
+
+    void setReleased(boolean released) {
+        this.released = released;
+    }
+
+    void setDispatchTime(long dispatchTime) {
+        this.dispatchTime = dispatchTime;
+    }
+
+    /**
+     * @return int - the number of samples in the batch (at least 1).
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param i int - the sample's index, 0 is the oldest.
+     * @return float - the sample's normalized x.
+     */
+    public float getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * @param i int - the sample's index, 0 is the oldest.
+     * @return float - the sample's normalized y.
+     */
+    public float getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * @param i int - the sample's index, 0 is the oldest.
+     * @return long - the sample's time, in the SystemClock.uptimeMillis() time base.
+     */
+    public long getEventTime(int i) {
+        return eventTime[i];
+    }
+
+    /**
+     * @return float - the newest sample's normalized x.
+     */
+    public float getLatestX() {
+        return x[count - 1];
+    }
+
+    /**
+     * @return float - the newest sample's normalized y.
+     */
+    public float getLatestY() {
+        return y[count - 1];
+    }
+
+    /**
+     * @return boolean - whether the stick was released, in which case the newest sample is the
+     *         center.
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * @return long - System.nanoTime() when the batch was handed to the listener, for measuring
+     *         latency from there on.
+     */
+    public long getDispatchTime() {
+        return dispatchTime;
+    }
+}
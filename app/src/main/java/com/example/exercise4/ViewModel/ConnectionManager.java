@@ -0,0 +1,80 @@
+package com.example.exercise4.ViewModel;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+/**
+ * Owns the process' connection to the simulators, so it outlives the activities using it. The
+ * LoginActivity connects as soon as the addresses are resolved, so the connection is established
+ * (or well on its way) by the time the JoystickActivity shows, and a JoystickActivity recreated by
+ * a configuration change picks up the same ViewModel instead of reconnecting.
+ * The connection is only closed when released by an activity which is finishing for good, or
+ * replaced by a connection to other simulators. The time it took to connect, and to send the
+ * first command, is part of the ViewModel's metrics report.
+ */
+public class ConnectionManager {
+
+    private static final ConnectionManager INSTANCE = new ConnectionManager();
+
+    // Guarded by this:
+    private ViewModel viewModel;
+    private String key;
+
+    private ConnectionManager() {
+    }
+
+    /**
+     * @return ConnectionManager - the process' single instance.
+     */
+    public static ConnectionManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the ViewModel connected to given simulators, with no view attached if it's new. The
+     * current one is kept if it's connected to the same simulators and its connection wasn't
+     * closed (e.g. after failing to reach the simulator), and replaced otherwise.
+     * @param addresses InetSocketAddress[] - the resolved address of each simulator.
+     * @param udp boolean - whether to send over UDP (a single simulator only).
+     * @return ViewModel - the connected ViewModel.
+     */
+    public synchronized ViewModel connect(InetSocketAddress[] addresses, boolean udp) {
+        String nextKey = udp + " " + Arrays.toString(addresses);
+        if (viewModel != null && nextKey.equals(key) && !viewModel.isClosed()) {
+            return viewModel;
+        }
+        release();
+        viewModel = addresses.length > 1 ? new ViewModel(null, addresses)
+                : new ViewModel(null, addresses[0], udp);
+        key = nextKey;
+        return viewModel;
+    }
+
+    /**
+     * @return ViewModel - the current ViewModel, or null if there's no connection.
+     */
+    public synchronized ViewModel getViewModel() {
+        return viewModel;
+    }
+
+    /**
+     * Disconnect given ViewModel, if it's the current one.
+     * @param released ViewModel - the ViewModel no longer needed.
+     */
+    public synchronized void release(ViewModel released) {
+        if (released == viewModel) {
+            release();
+        }
+    }
+
+    /**
+     * Disconnect the current ViewModel, if any.
+     */
+    public synchronized void release() {
+        if (viewModel != null) {
+            viewModel.disconnect();
+            viewModel = null;
+            key = null;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.exercise4.ViewModel;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sits between the controls and the model, and decides which control positions are worth
+ * sending. Every axis is quantized to its step, only positions that changed are sent ("send on
+ * change only"), and no more than maxRate positions are sent per second. A position which arrives
+ * too soon after the last one is held and sent once the interval passes, unless a newer one
+ * replaced it, so the controls' final position is never lost.
+ * The first two axes are the stick's (aileron and elevator). Any further axes (e.g. rudder and
+ * throttle) are submitted on their own, and are sent together with the stick, as a single update.
+ * The centered stick position, which the JoystickView reports when released (ACTION_UP), is
+ * always sent right away.
+ */
+public class ControlOutputStage {
+
+    public static final double DEFAULT_MAX_RATE = 50;
+    public static final double DEFAULT_STEP = 0.01;
+
+    // The indexes of the stick's axes.
+    public static final int AILERON = 0;
+    public static final int ELEVATOR = 1;
+
+    /**
+     * Receives the stick positions chosen to be sent.
+     */
+    public interface Sink {
+        void send(double aileron, double elevator);
+    }
+
+    /**
+     * Receives the positions of every axis chosen to be sent.
+     */
+    public interface AxesSink {
+        /**
+         * @param values double[] - the value of each axis. Only valid during the call.
+         * @param changed boolean[] - whether each axis changed since the last send (axes never
+         *                submitted are never changed). Only valid during the call.
+         */
+        void send(double[] values, boolean[] changed);
+    }
+
+    private final AxesSink sink;
+    private final ScheduledExecutorService scheduler;
+    private long interval; // Guarded by this.
+    private final double[] steps;
+
+    // Guarded by this. NaN until an axis is submitted or sent:
+    private final double[] lastValues;
+    private final double[] values;
+    private final boolean[] changed;
+    private boolean pending = false;
+    private boolean flushScheduled = false;
+    private long lastSendTime;
+    private long submittedCount = 0;
+    private long sentCount = 0;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flushPending();
+        }
+    };
+
+    /**
+     * ControlOutputStage's constructor, with DEFAULT_MAX_RATE and DEFAULT_STEP on both axes.
+     * @param sink Sink - where positions are sent.
+     * @param scheduler ScheduledExecutorService - runs the delayed sends.
+     */
+    public ControlOutputStage(Sink sink, ScheduledExecutorService scheduler) {
+        this(sink, scheduler, DEFAULT_MAX_RATE, DEFAULT_STEP, DEFAULT_STEP);
+    }
+
+    /**
+     * ControlOutputStage's constructor, of the stick's axes only.
+     * @param sink Sink - where positions are sent.
+     * @param scheduler ScheduledExecutorService - runs the delayed sends.
+     * @param maxRate double - the maximum positions sent per second.
+     * @param aileronStep double - the aileron's quantization step (0 for none).
+     * @param elevatorStep double - the elevator's quantization step (0 for none).
+     */
+    public ControlOutputStage(final Sink sink, ScheduledExecutorService scheduler, double maxRate,
+                              double aileronStep, double elevatorStep) {
+        this(new AxesSink() {
+            @Override
+            public void send(double[] values, boolean[] changed) {
+                sink.send(values[AILERON], values[ELEVATOR]);
+            }
+        }, scheduler, maxRate, aileronStep, elevatorStep);
+    }
+
+    /**
+     * ControlOutputStage's constructor.
+     * @param sink AxesSink - where positions are sent.
+     * @param scheduler ScheduledExecutorService - runs the delayed sends.
+     * @param maxRate double - the maximum positions sent per second.
+     * @param steps double[] - the quantization step of each axis (0 for none), the stick's first.
+     */
+    public ControlOutputStage(AxesSink sink, ScheduledExecutorService scheduler, double maxRate,
+                              double... steps) {
+        if (maxRate <= 0 || steps.length < 2) {
+            throw new IllegalArgumentException("Invalid output stage configuration.");
+        }
+        for (double step : steps) {
+            if (step < 0) {
+                throw new IllegalArgumentException("Invalid output stage configuration.");
+            }
+        }
+        this.sink = sink;
+        this.scheduler = scheduler;
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / maxRate);
+        this.steps = steps.clone();
+        this.lastValues = new double[steps.length];
+        this.values = new double[steps.length];
+        this.changed = new boolean[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            lastValues[i] = Double.NaN;
+            values[i] = Double.NaN;
+        }
+        // Lets the first position through right away.
+        this.lastSendTime = System.nanoTime() - interval;
+    }
+
+    /**
+     * Change the maximum positions sent per second, e.g. to infinity when the submits are already
+     * paced by a control tick, so every changed position is sent right away.
+     * @param maxRate double - the maximum positions sent per second.
+     */
+    public synchronized void setMaxRate(double maxRate) {
+        if (maxRate <= 0) {
+            throw new IllegalArgumentException("Invalid output stage configuration.");
+        }
+        interval = (long) (TimeUnit.SECONDS.toNanos(1) / maxRate);
+    }
+
+    /**
+     * @return int - the number of axes, the stick's included.
+     */
+    public int getAxisCount() {
+        return steps.length;
+    }
+
+    /**
+     * Offer a new stick position. Sent now, later, or not at all, as described on the class.
+     * @param aileron double - the aileron's value.
+     * @param elevator double - the elevator's value.
+     */
+    public synchronized void submit(double aileron, double elevator) {
+        values[AILERON] = quantize(aileron, steps[AILERON]);
+        values[ELEVATOR] = quantize(elevator, steps[ELEVATOR]);
+        boolean centered = values[AILERON] == 0 && values[ELEVATOR] == 0
+                && (lastValues[AILERON] != 0 || lastValues[ELEVATOR] != 0);
+        update(centered);
+    }
+
+    /**
+     * Offer a new position of an axis other than the stick's. Sent together with the stick, now,
+     * later, or not at all, as described on the class.
+     * @param axis int - the axis' index (2 - getAxisCount() - 1).
+     * @param value double - the axis' value.
+     */
+    public synchronized void submit(int axis, double value) {
+        if (axis == AILERON || axis == ELEVATOR) {
+            throw new IllegalArgumentException("The stick's axes are submitted together.");
+        }
+        values[axis] = quantize(value, steps[axis]);
+        update(false);
+    }
+
+    /**
+     * Send the submitted position now, hold it until the interval passes, or drop it if nothing
+     * changed. Called while holding this.
+     * @param centered boolean - whether the stick was just centered, which is sent right away.
+     */
+    private void update(boolean centered) {
+        submittedCount++;
+        if (!hasChanged()) {
+            // Back to the last sent position - nothing pending is needed anymore.
+            pending = false;
+            return;
+        }
+        long now = System.nanoTime();
+        if (centered || now - lastSendTime >= interval) {
+            pending = false;
+            send(now);
+        } else {
+            pending = true;
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(flush, lastSendTime + interval - now, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Send the held position, if any. Runs on the scheduler.
+     */
+    private synchronized void flushPending() {
+        flushScheduled = false;
+        if (pending) {
+            pending = false;
+            send(System.nanoTime());
+        }
+    }
+
+    /**
+     * @return boolean - whether any submitted axis differs from its last sent value.
+     */
+    private boolean hasChanged() {
+        boolean any = false;
+        for (int i = 0; i < values.length; i++) {
+            // NaN != NaN, so axes never submitted are checked first.
+            changed[i] = !Double.isNaN(values[i]) && values[i] != lastValues[i];
+            any |= changed[i];
+        }
+        return any;
+    }
+
+    /**
+     * Send the current position to the sink. Called while holding this, so positions reach the
+     * sink in the order they were chosen (the sink only queues them, so this is short).
+     */
+    private void send(long now) {
+        hasChanged();
+        System.arraycopy(values, 0, lastValues, 0, values.length);
+        lastSendTime = now;
+        sentCount++;
+        sink.send(values, changed);
+    }
+
+    private static double quantize(double value, double step) {
+        if (step == 0) {
+            return value;
+        }
+        // "+ 0.0" turns -0.0 into 0.0, so a centered stick always compares equal to 0.
+        return Math.round(value / step) * step + 0.0;
+    }
+
+    /**
+     * @return long - the number of positions submitted so far.
+     */
+    public synchronized long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    /**
+     * @return long - the number of positions sent so far.
+     */
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.exercise4.ViewModel;
+
+/**
+ * Drives the ViewModel's control tick, which takes the newest input and passes it on: at a fixed
+ * rate (FixedRateTicker) or once per display frame (VsyncTicker).
+ */
+public interface ControlTicker {
+
+    /**
+     * Start calling given tick, off the UI thread, until stopped.
+     * @param tick Runnable - the tick.
+     */
+    void start(Runnable tick);
+
+    /**
+     * Stop calling the tick. A tick already running may still finish.
+     */
+    void stop();
+}
@@ -0,0 +1,41 @@
+package com.example.exercise4.ViewModel;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ControlTicker ticking at a fixed rate (e.g. the simulator's frame rate) on a scheduler.
+ */
+public class FixedRateTicker implements ControlTicker {
+
+    private final ScheduledExecutorService scheduler;
+    private final long period;
+    private ScheduledFuture<?> future;
+
+    /**
+     * FixedRateTicker's constructor.
+     * @param scheduler ScheduledExecutorService - runs the ticks, e.g. the control thread.
+     * @param rate double - the ticks per second.
+     */
+    public FixedRateTicker(ScheduledExecutorService scheduler, double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("The rate must be positive.");
+        }
+        this.scheduler = scheduler;
+        this.period = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    @Override
+    public synchronized void start(Runnable tick) {
+        future = scheduler.scheduleAtFixedRate(tick, 0, period, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.exercise4.ViewModel;
+
+/**
+ * Shapes a normalized axis value (-1 - 1) before it's sent: a dead zone around the center, where
+ * small unintended movements read as 0, and an expo curve, which softens the response near the
+ * center while still reaching full deflection at the edge.
+ * The curve is computed once into a lookup table over 0 - 1, and applying it is a lookup and a
+ * linear interpolation - no pow or other math per sample. The curve is symmetric, so negative
+ * values are looked up by their absolute value.
+ * Immutable, so a single instance may be used by any number of threads.
+ */
+public class ResponseCurve {
+
+    // The number of intervals the table divides 0 - 1 into.
+    public static final int TABLE_SIZE = 1024;
+
+    public static final ResponseCurve LINEAR = new ResponseCurve(0, 0);
+
+    private final double deadZone;
+    private final double expo;
+    private final float[] table = new float[TABLE_SIZE + 1];
+
+    /**
+     * ResponseCurve's constructor.
+     * @param deadZone double - the part of the axis around the center which reads as 0 (0 - 1,
+     *                 exclusive). The rest is stretched to still reach 1.
+     * @param expo double - how much of the cubic curve is mixed in (0 for linear - 1 for cubic).
+     */
+    public ResponseCurve(double deadZone, double expo) {
+        if (deadZone < 0 || deadZone >= 1 || expo < 0 || expo > 1) {
+            throw new IllegalArgumentException("Invalid response curve.");
+        }
+        this.deadZone = deadZone;
+        this.expo = expo;
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            double value = (double) i / TABLE_SIZE;
+            if (value <= deadZone) {
+                table[i] = 0;
+            } else {
+                double stretched = (value - deadZone) / (1 - deadZone);
+                table[i] = (float) ((1 - expo) * stretched
+                        + expo * stretched * stretched * stretched);
+            }
+        }
+    }
+
+    /**
+     * @return double - the dead zone.
+     */
+    public double getDeadZone() {
+        return deadZone;
+    }
+
+    /**
+     * @return double - the expo.
+     */
+    public double getExpo() {
+        return expo;
+    }
+
+    /**
+     * Apply the curve to given value.
+     * @param value double - a normalized value, clamped to -1 - 1.
+     * @return double - the shaped value, with the same sign.
+     */
+    public double apply(double value) {
+        double abs = Math.min(Math.abs(value), 1);
+        if (abs <= deadZone) { // The table entry past the edge would leak into the dead zone.
+            return 0.0;
+        }
+        double position = abs * TABLE_SIZE;
+        int index = (int) position;
+        double shaped = index == TABLE_SIZE ? table[TABLE_SIZE]
+                : table[index] + (table[index + 1] - table[index]) * (position - index);
+        // "+ 0.0" turns -0.0 into 0.0, so a centered axis always compares equal to 0.
+        return (value < 0 ? -shaped : shaped) + 0.0;
+    }
+}
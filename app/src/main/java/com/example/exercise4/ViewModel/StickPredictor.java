@@ -0,0 +1,111 @@
+package com.example.exercise4.ViewModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extrapolates the stick's position linearly from its two newest samples, to make up for the time
+ * the position takes to reach the simulator: the sample's age when it's sent, plus a fixed
+ * horizon (e.g. the network's and the simulator's latency). The lead is capped at MAX_LEAD, and
+ * the predicted axes are clamped to -1 - 1. Once no sample arrived for MAX_SAMPLE_GAP, the stick
+ * stopped moving, and its newest sample is predicted as is.
+ * A horizon of 0 turns prediction off - the newest sample is passed as is.
+ * Used by a single thread (the control thread).
+ */
+public class StickPredictor {
+
+    public static final long MAX_LEAD = TimeUnit.MILLISECONDS.toNanos(50);
+    // Samples further apart are a new movement, not a velocity, and a stick without a newer
+    // sample for that long stopped moving.
+    public static final long MAX_SAMPLE_GAP = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private long horizon = 0;
+    private boolean hasSample = false;
+    private double x;
+    private double y;
+    private long time;
+    // In axis units per nanosecond.
+    private double velocityX = 0;
+    private double velocityY = 0;
+    private double predictedX;
+    private double predictedY;
+
+    /**
+     * Set how far past the sample's age to extrapolate.
+     * @param horizon long - the horizon in nanoseconds, or 0 for no prediction.
+     */
+    public void setHorizon(long horizon) {
+        if (horizon < 0) {
+            throw new IllegalArgumentException("The horizon can't be negative.");
+        }
+        this.horizon = horizon;
+    }
+
+    /**
+     * @return long - the horizon in nanoseconds, 0 if not predicting.
+     */
+    public long getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Add the newest sample.
+     * @param x double - the normalized x (-1 - 1).
+     * @param y double - the normalized y (-1 - 1).
+     * @param time long - the System.nanoTime() the sample was input at.
+     * @param released boolean - whether the stick was released, which stops it right away.
+     */
+    public void sample(double x, double y, long time, boolean released) {
+        long gap = time - this.time;
+        if (hasSample && !released && gap > 0 && gap <= MAX_SAMPLE_GAP) {
+            velocityX = (x - this.x) / gap;
+            velocityY = (y - this.y) / gap;
+        } else {
+            velocityX = 0;
+            velocityY = 0;
+        }
+        this.x = x;
+        this.y = y;
+        this.time = time;
+        hasSample = true;
+    }
+
+    /**
+     * @return boolean - whether predictions extrapolate, in which case they change with the time
+     *         even without new samples, until the stick is found to have stopped.
+     */
+    public boolean isMoving() {
+        return horizon > 0 && (velocityX != 0 || velocityY != 0);
+    }
+
+    /**
+     * Predict the position at given time, read by getX and getY.
+     * @param now long - System.nanoTime() of the send.
+     */
+    public void predict(long now) {
+        if (now - time > MAX_SAMPLE_GAP) { // Stopped - no more extrapolating.
+            velocityX = 0;
+            velocityY = 0;
+        }
+        long lead = horizon == 0 ? 0 : Math.max(0, Math.min(MAX_LEAD, now - time + horizon));
+        predictedX = clamp(x + velocityX * lead);
+        predictedY = clamp(y + velocityY * lead);
+    }
+
+    /**
+     * @return double - the predicted x.
+     */
+    public double getX() {
+        return predictedX;
+    }
+
+    /**
+     * @return double - the predicted y.
+     */
+    public double getY() {
+        return predictedY;
+    }
+
+    private static double clamp(double value) {
+        return Math.max(-1, Math.min(1, value));
+    }
+}
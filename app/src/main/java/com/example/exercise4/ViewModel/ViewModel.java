@@ -5,60 +5,509 @@ import android.app.Activity;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
 import androidx.appcompat.app.AlertDialog;
+import com.example.exercise4.Model.ConnectionEngine;
+import com.example.exercise4.Model.ControlRegistry.Control;
+import com.example.exercise4.Model.FanOutTransport;
 import com.example.exercise4.Model.FlightGearClient;
+import com.example.exercise4.Model.ReconnectPolicy;
+import com.example.exercise4.Model.SendMetrics;
+import com.example.exercise4.Model.SessionRecorder;
+import com.example.exercise4.Model.TelemetrySnapshot;
 import com.example.exercise4.Model.TCPClient.OnExceptionListener;
-import com.example.exercise4.View.ViewObjects.JoystickView.OnMoveListener;
+import com.example.exercise4.View.ViewObjects.HardwareStick.OnAxesListener;
+import com.example.exercise4.View.ViewObjects.JoystickView.OnPositionListener;
+import com.example.exercise4.View.ViewObjects.PositionMailbox;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * The ViewModel class for the MVVM architecture. Serves as a model for the JoystickActivity class,
  * and serves as View for the FlightGearClient class (which serve as the model).
- * Implements OnMoveListener to serve as a listener for the JoystickView,
+ * Implements OnPositionListener to serve as a listener for the JoystickView (an OnMoveListener
+ * can be adapted to it by JoystickView.MoveAdapter), though the view normally publishes to the
+ * stick mailbox instead, and OnAxesListener to get a HardwareStick's rudder and throttle (its
+ * stick is published to the stick mailbox too). Every input is only published by the UI thread,
+ * and taken by the control tick: at CONTROL_TICK_RATE by default, where the output stage limits
+ * the rate, or paced exactly - once per display frame (useVsyncTick) or at a fixed rate
+ * (setTickRate), optionally extrapolating the stick (setPrediction).
  * Implements OnExceptionListener to serve as a listener for the FlightGearClient.
  * Implements OnClickListener to serve as a listener for AlertDialog's close button.
+ * Outlives the activity showing it (see ConnectionManager): the activity attaches itself once
+ * created and detaches once destroyed, and the model's callbacks delivered in between wait for
+ * the next one.
  */
-public class ViewModel implements OnMoveListener, OnExceptionListener, OnClickListener {
+public class ViewModel implements OnPositionListener, OnAxesListener, OnExceptionListener,
+        OnClickListener {
+
+    // The properties read back from the simulator, and how often they are requested (per second).
+    public static final String[] TELEMETRY_PATHS = {
+            "/position/altitude-ft",
+            "/velocities/airspeed-kt",
+            "/orientation/heading-deg",
+            "/" + FlightGearClient.AILERON,
+            "/" + FlightGearClient.ELEVATOR};
+    public static final int TELEMETRY_RATE = 10;
+
+    // The properties of the output stage's axes, in order: the stick's, then the sliders'.
+    private static final String[] AXES = {
+            FlightGearClient.AILERON,
+            FlightGearClient.ELEVATOR,
+            FlightGearClient.RUDDER,
+            FlightGearClient.THROTTLE};
+    private static final int RUDDER_AXIS = 2;
+    private static final int THROTTLE_AXIS = 3;
+
+    // How often the control thread takes the newest input and passes it on (per second).
+    public static final int CONTROL_TICK_RATE = 120;
+    // The tick rate used instead of the vsync on devices without a Choreographer.
+    public static final int FALLBACK_DISPLAY_RATE = 60;
+    // A softer stick than the linear default: a small dead zone against jitter around the
+    // center, and an expo curve for finer control near it.
+    public static final ResponseCurve SOFT_STICK_CURVE = new ResponseCurve(0.05, 0.4);
+    // An empty slot of the slider mailbox - a NaN Double.doubleToLongBits never returns.
+    private static final long NO_VALUE = -1L;
 
     private FlightGearClient model;
-    private Activity view;
+    private TelemetrySnapshot telemetry;
+    private FanOutTransport fanOut;
+    private SessionRecorder recorder;
+    private File recording;
+    private Activity view; // Guarded by pendingCallbacks.
+    // The model's callbacks delivered while no view was attached, in order.
+    private final List<Runnable> pendingCallbacks = new ArrayList<>();
+    private ScheduledExecutorService outputScheduler;
+    private ControlOutputStage outputStage;
+
+    // Input published by the UI thread, taken by the control thread on every tick.
+    private final PositionMailbox stickMailbox = new PositionMailbox();
+    private final AtomicLongArray axisMailbox = new AtomicLongArray(AXES.length);
+    private final PositionMailbox.Position stick = new PositionMailbox.Position();
+    private final StickPredictor predictor = new StickPredictor();
+    // Held by every tick, so a tick of the ticker being replaced never overlaps the new one's.
+    private final Object tickLock = new Object();
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (tickLock) {
+                tick();
+            }
+        }
+    };
+    private ControlTicker ticker; // Guarded by this.
+    private boolean vsyncTick = false; // Guarded by this.
+    // Applied to the stick's axes by the control thread.
+    private volatile ResponseCurve stickCurve = ResponseCurve.LINEAR;
+    // The throttle's last position, restored by a recreated view.
+    private volatile double throttle = 0;
 
     /***
      * The constructor for the ViewModel class. Set the view to the JoystickActivity given to him
-     * as parameter, and creates a new instance of FlightGearClient with given IP and Port
-     * parameters as the model.
-     * @param joystickActivity Activity - will serve as the view
+     * as parameter, and creates a new coalescing instance of FlightGearClient with given IP and
+     * Port parameters as the model (only the newest stick position is ever sent).
+     * The model's exceptions are delivered on the view's UI thread. A lost connection is
+     * reconnected automatically, so only a failure to reach the simulator at all is shown.
+     * @param joystickActivity Activity - will serve as the view, or null to attach one later
      * @param ip String - used for the model
      * @param port String - used for the model
      */
     public ViewModel(Activity joystickActivity, String ip, String port) {
+        this(joystickActivity, ip, port, false);
+    }
+
+    /***
+     * The constructor for the ViewModel class, choosing the model's transport: over UDP every
+     * update is a single datagram of the generic protocol (FlightGearClient.CONTROL_DATAGRAM),
+     * otherwise "set" commands are sent over TCP. Nothing is read back over UDP, so there's no
+     * telemetry.
+     * @param joystickActivity Activity - will serve as the view, or null to attach one later
+     * @param ip String - used for the model
+     * @param port String - used for the model
+     * @param udp boolean - whether to send over UDP
+     */
+    public ViewModel(Activity joystickActivity, String ip, String port, boolean udp) {
+        this(joystickActivity, udp
+                ? new FlightGearClient(ip, port, FlightGearClient.CONTROL_DATAGRAM)
+                : new FlightGearClient(ip, port, true), null);
+    }
+
+    /***
+     * The constructor for the ViewModel class, driving several simulators at once (e.g. the
+     * screens of a multi-monitor rig) over TCP. Every update is encoded once and written to all of
+     * them by a single FanOutTransport, which keeps a slow or lost simulator from holding back the
+     * others and brings it back up to date once it catches up. Nothing is read back, so there's
+     * no telemetry.
+     * @param joystickActivity Activity - will serve as the view, or null to attach one later
+     * @param ips String[] - the IP of each simulator
+     * @param ports String[] - the port of each simulator, in the same order
+     */
+    public ViewModel(Activity joystickActivity, String[] ips, String[] ports) {
+        this(joystickActivity, new FanOutTransport(ips, parsePorts(ports)));
+    }
+
+    /***
+     * The constructor for the ViewModel class, connecting to an address resolved ahead of time
+     * (e.g. by an EndpointResolver), so connecting doesn't look the host up again. See the String
+     * constructor choosing the transport.
+     * @param joystickActivity Activity - will serve as the view, or null to attach one later
+     * @param address InetSocketAddress - the simulator's resolved address
+     * @param udp boolean - whether to send over UDP
+     */
+    public ViewModel(Activity joystickActivity, InetSocketAddress address, boolean udp) {
+        this(joystickActivity, udp
+                ? new FlightGearClient(address, FlightGearClient.CONTROL_DATAGRAM)
+                : new FlightGearClient(address, true), null);
+    }
+
+    /***
+     * The constructor for the ViewModel class, driving several simulators at once over TCP, at
+     * addresses resolved ahead of time. See the String constructor driving several simulators.
+     * @param joystickActivity Activity - will serve as the view, or null to attach one later
+     * @param addresses InetSocketAddress[] - the resolved address of each simulator
+     */
+    public ViewModel(Activity joystickActivity, InetSocketAddress[] addresses) {
+        this(joystickActivity, new FanOutTransport(addresses));
+    }
+
+    private ViewModel(Activity joystickActivity, FanOutTransport fanOut) {
+        this(joystickActivity, new FlightGearClient(fanOut, true), fanOut);
+    }
+
+    private ViewModel(Activity joystickActivity, FlightGearClient client, FanOutTransport fanOut) {
         this.view = joystickActivity;
-        model = new FlightGearClient(ip, port);
+        this.fanOut = fanOut;
+        model = client;
         model.setExceptionListener(this);
+        model.setReconnectPolicy(new ReconnectPolicy());
+        if (fanOut == null) {
+            // Only TCP has responses to read the properties from.
+            if (!model.isUdp()) {
+                telemetry = model.enableTelemetry(TELEMETRY_PATHS);
+            }
+        } else {
+            fanOut.setReconnectPolicy(new ReconnectPolicy());
+            fanOut.setResyncSource(model);
+        }
+        model.setCallbackExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Activity current;
+                synchronized (pendingCallbacks) {
+                    current = view;
+                    if (current == null) {
+                        pendingCallbacks.add(command);
+                        return;
+                    }
+                }
+                current.runOnUiThread(command);
+            }
+        });
+        model.connect();
+
+        outputScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ControlThread");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final Control[] axisControls = new Control[AXES.length];
+        for (int i = 0; i < AXES.length; i++) {
+            axisControls[i] = model.register(AXES[i]);
+        }
+        outputStage = new ControlOutputStage(new ControlOutputStage.AxesSink() {
+            // Only touched on the stage's send, which holds the stage's lock.
+            private final Control[] controls = new Control[AXES.length];
+            private final double[] values = new double[AXES.length];
+
+            @Override
+            public void send(double[] axisValues, boolean[] changed) {
+                int count = 0;
+                for (int i = 0; i < AXES.length; i++) {
+                    if (changed[i]) {
+                        controls[count] = axisControls[i];
+                        values[count++] = axisValues[i];
+                    }
+                }
+                model.set(controls, values, count);
+            }
+        }, outputScheduler, ControlOutputStage.DEFAULT_MAX_RATE, ControlOutputStage.DEFAULT_STEP,
+                ControlOutputStage.DEFAULT_STEP, ControlOutputStage.DEFAULT_STEP,
+                ControlOutputStage.DEFAULT_STEP);
+        for (int i = 0; i < AXES.length; i++) {
+            axisMailbox.set(i, NO_VALUE);
+        }
+        ticker = new FixedRateTicker(outputScheduler, CONTROL_TICK_RATE);
+        ticker.start(tick);
+        if (telemetry != null) {
+            outputScheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    model.requestTelemetry();
+                }
+            }, 0, 1000 / TELEMETRY_RATE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Attach given activity as the view, which the model's callbacks are delivered on from now
+     * on, and deliver the ones which arrived while there was none. Called on the UI thread.
+     * @param activity Activity - the view.
+     */
+    public void attach(Activity activity) {
+        List<Runnable> pending;
+        synchronized (pendingCallbacks) {
+            view = activity;
+            pending = new ArrayList<>(pendingCallbacks);
+            pendingCallbacks.clear();
+        }
+        for (Runnable callback : pending) {
+            activity.runOnUiThread(callback);
+        }
+    }
+
+    /**
+     * Detach given activity, if it's the view. The model's callbacks wait for the next view until
+     * one is attached. Called on the UI thread.
+     * @param activity Activity - the view being destroyed.
+     */
+    public void detach(Activity activity) {
+        synchronized (pendingCallbacks) {
+            if (view == activity) {
+                view = null;
+            }
+        }
+    }
+
+    /**
+     * @return boolean - whether the model's connection was closed, either by disconnect or after
+     *         failing, so it can't be used anymore.
+     */
+    public boolean isClosed() {
+        return model.getState() == ConnectionEngine.State.CLOSED;
+    }
+
+    private static int[] parsePorts(String[] ports) {
+        int[] portNumbers = new int[ports.length];
+        for (int i = 0; i < ports.length; i++) {
+            portNumbers[i] = Integer.parseInt(ports[i]);
+        }
+        return portNumbers;
+    }
+
+    /**
+     * @return TelemetrySnapshot - the latest values read back from the simulator (TELEMETRY_PATHS,
+     *         in order), or null when driving several simulators or sending over UDP. Can be
+     *         polled from any thread, or subscribed to.
+     */
+    public TelemetrySnapshot getTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * @return PositionMailbox - the mailbox the JoystickView (and a HardwareStick) publishes the
+     *         stick's samples to, taken by the control thread.
+     */
+    public PositionMailbox getStickMailbox() {
+        return stickMailbox;
+    }
+
+    /**
+     * Set the response curve (dead zone and expo) applied to both of the stick's axes.
+     * @param stickCurve ResponseCurve - the curve, or ResponseCurve.LINEAR for none.
+     */
+    public void setStickCurve(ResponseCurve stickCurve) {
+        this.stickCurve = stickCurve;
+    }
+
+    /**
+     * @return ResponseCurve - the response curve applied to the stick's axes.
+     */
+    public ResponseCurve getStickCurve() {
+        return stickCurve;
+    }
+
+    /**
+     * Tick once per display frame, aligned to the vsync, sending at most a single update per
+     * frame. Falls back to setTickRate(FALLBACK_DISPLAY_RATE) on devices without a Choreographer.
+     */
+    public synchronized void useVsyncTick() {
+        if (!VsyncTicker.isSupported()) {
+            setTickRate(FALLBACK_DISPLAY_RATE);
+            return;
+        }
+        replaceTicker(new VsyncTicker(), Double.POSITIVE_INFINITY);
+        vsyncTick = true;
+    }
+
+    /**
+     * Tick at given fixed rate (e.g. the simulator's frame rate), sending at most a single update
+     * per tick.
+     * @param rate double - the ticks per second.
+     */
+    public synchronized void setTickRate(double rate) {
+        replaceTicker(new FixedRateTicker(outputScheduler, rate), Double.POSITIVE_INFINITY);
+        vsyncTick = false;
+    }
+
+    /**
+     * Go back to ticking at CONTROL_TICK_RATE, with the output stage limiting the rate.
+     */
+    public synchronized void useDefaultTick() {
+        replaceTicker(new FixedRateTicker(outputScheduler, CONTROL_TICK_RATE),
+                ControlOutputStage.DEFAULT_MAX_RATE);
+        vsyncTick = false;
+    }
+
+    /**
+     * @return boolean - whether ticking once per display frame.
+     */
+    public synchronized boolean isVsyncTick() {
+        return vsyncTick;
+    }
+
+    /**
+     * Called while holding this.
+     * @param next ControlTicker - the ticker replacing the current one.
+     * @param maxRate double - the output stage's rate limit, infinite if the ticks pace the sends.
+     */
+    private void replaceTicker(ControlTicker next, double maxRate) {
+        ticker.stop();
+        outputStage.setMaxRate(maxRate);
+        ticker = next;
+        ticker.start(tick);
+    }
+
+    /**
+     * Extrapolate the stick's position to make up for the latency on its way to the simulator,
+     * as described on StickPredictor.
+     * @param horizonMillis long - how far past the sample's age to extrapolate, in milliseconds,
+     *                      or 0 for no prediction.
+     */
+    public void setPrediction(long horizonMillis) {
+        long horizon = TimeUnit.MILLISECONDS.toNanos(horizonMillis);
+        synchronized (tickLock) {
+            predictor.setHorizon(horizon);
+        }
     }
 
     /***
-     * Get the normalized x and y parameters from given angle and length and send them to the model.
-     * @param angle double - the current angle of the joystick handle, calculated in radians.
-     * @param length int - the current distance of the joystick handle from them middle
-     *               as a percent (0 - 100)
+     * Publish given normalized position for the control thread, which shapes it and passes it to
+     * the output stage.
+     * @param x float - the handle's normalized x (-1 - 1).
+     * @param y float - the handle's normalized y (-1 - 1).
+     */
+    @Override
+    public void onPosition(float x, float y) {
+        stickMailbox.publish(x, y, 1, System.nanoTime(), x == 0 && y == 0);
+    }
+
+    /**
+     * Publish the rudder's position for the control thread, which sends it together with the
+     * stick.
+     * @param rudder double - the rudder's value (-1 - 1).
+     */
+    @Override
+    public void onRudder(double rudder) {
+        axisMailbox.set(RUDDER_AXIS, Double.doubleToLongBits(rudder));
+    }
+
+    /**
+     * Publish the throttle's position for the control thread, which sends it together with the
+     * stick.
+     * @param throttle double - the throttle's value (0 - 1).
      */
     @Override
-    public void onMove(double angle, int length) {
-        // Apparently the cos/sin functions can't handle well PI or PI/2 values:
-        double normX = Math.abs(angle) == Math.PI / 2 ?
-                0.0 : ((double)length * Math.cos(angle)) / 100;
-        double normY = Math.abs(angle) == Math.PI  ?
-                0.0 :((double)length * Math.sin(angle)) / 100;
-        model.setAileron(normX);
-        model.setElevator(normY);
+    public void onThrottle(double throttle) {
+        this.throttle = throttle;
+        axisMailbox.set(THROTTLE_AXIS, Double.doubleToLongBits(throttle));
+    }
+
+    /**
+     * @return double - the throttle's last published position (0 - 1), 0 if none was.
+     */
+    public double getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Take the newest input published since the last tick, normalize it, predict where the stick
+     * is heading (from the newest sample and the one input right before it), apply the stick's
+     * response curve and pass it to the output stage, which filters it and sends it to the model.
+     * When predicting, a moving stick is predicted on every tick, even without new input, until
+     * it stopped. Runs on the ticker's thread, while holding tickLock, so none of it holds up the
+     * UI thread's rendering.
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        if (stickMailbox.take(stick)) {
+            if (stick.getPreviousTime() != 0) {
+                // The sample right before the newest, so the velocity is the newest input's.
+                predictor.sample(clamp(stick.getPreviousX() / stick.getScale()),
+                        clamp(stick.getPreviousY() / stick.getScale()), stick.getPreviousTime(),
+                        false);
+            }
+            double x = clamp(stick.getX() / stick.getScale());
+            double y = clamp(stick.getY() / stick.getScale());
+            predictor.sample(x, y, stick.getTime(), stick.isReleased());
+            // Measured from the oldest input this send reflects.
+            model.getSendMetrics().onInput(stick.getInputTime());
+            submitStick(now);
+        } else if (predictor.isMoving()) {
+            // Still heading somewhere - predicted further, or where it stopped once it did.
+            submitStick(now);
+        }
+        for (int axis = RUDDER_AXIS; axis < AXES.length; axis++) {
+            long bits = axisMailbox.getAndSet(axis, NO_VALUE);
+            if (bits != NO_VALUE) {
+                model.getSendMetrics().onInput(System.nanoTime());
+                outputStage.submit(axis, Double.longBitsToDouble(bits));
+            }
+        }
+    }
+
+    private void submitStick(long now) {
+        predictor.predict(now);
+        ResponseCurve curve = stickCurve;
+        outputStage.submit(curve.apply(predictor.getX()), curve.apply(predictor.getY()));
+    }
+
+    private static double clamp(double value) {
+        return Math.max(-1, Math.min(1, value));
     }
 
     /***
-     * Creates a new Alert Dialog on the view, describing the exception which occurred.
+     * Creates a new Alert Dialog on the view, describing the exception which occurred. If the
+     * view was detached since, waits for the next one.
      * @param e Exception
      */
     @Override
-    public void onException(Exception e) {
-        new AlertDialog.Builder(view)
+    public void onException(final Exception e) {
+        Activity current;
+        synchronized (pendingCallbacks) {
+            current = view;
+            if (current == null) {
+                pendingCallbacks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        onException(e);
+                    }
+                });
+                return;
+            }
+        }
+        new AlertDialog.Builder(current)
                 .setTitle("An Exception Occurred:")
                 .setMessage(e.toString())
                 .setNeutralButton("Close", this)
@@ -72,13 +521,114 @@ public class ViewModel implements OnMoveListener, OnExceptionListener, OnClickLi
      */
     @Override
     public void onClick(DialogInterface dialogInterface, int i) {
-        view.finish();
+        Activity current;
+        synchronized (pendingCallbacks) {
+            current = view;
+        }
+        if (current != null) {
+            current.finish();
+        }
+    }
+
+    /**
+     * @return SendMetrics - the latencies and counts of the model's send path.
+     */
+    public SendMetrics getSendMetrics() {
+        return model.getSendMetrics();
+    }
+
+    /**
+     * Sample the send rates and describe every metric of the send path: the model's SendMetrics,
+     * the positions the output stage held back, the reconnects and the health of every simulator
+     * when driving several. Meant to be called periodically
+     * by a debug overlay.
+     * @return String - the metrics, a line each.
+     */
+    public String getMetricsReport() {
+        SendMetrics metrics = model.getSendMetrics();
+        metrics.sampleRates(System.nanoTime());
+        long submitted = outputStage.getSubmittedCount();
+        long sent = outputStage.getSentCount();
+        StringBuilder report = new StringBuilder()
+                .append(metrics)
+                .append("stage submitted ").append(submitted)
+                .append(" skipped ").append(submitted - sent).append('\n')
+                .append(model.getLinkStats());
+        if (fanOut != null) {
+            for (FanOutTransport.Endpoint endpoint : fanOut.getEndpoints()) {
+                report.append('\n').append(endpoint);
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Write the metrics report to given file, replacing it.
+     * @param file File - the file.
+     * @throws IOException if writing failed.
+     */
+    public void exportMetrics(File file) throws IOException {
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(getMetricsReport());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Start recording every value sent to the model into a new session log, replacing a
+     * recording in progress.
+     * @param file File - the log, replaced if it exists.
+     * @throws IOException if the file couldn't be created.
+     */
+    public void startRecording(File file) throws IOException {
+        SessionRecorder next = new SessionRecorder(file);
+        stopRecording();
+        recorder = next;
+        recording = file;
+        model.setRecorder(next);
+    }
+
+    /**
+     * @return boolean - whether a session is being recorded.
+     */
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    /**
+     * Stop recording, and close the session log.
+     * @return File - the log, or null if nothing was being recorded.
+     * @throws IOException if writing the log failed.
+     */
+    public File stopRecording() throws IOException {
+        if (recorder == null) {
+            return null;
+        }
+        model.setRecorder(null);
+        File file = recording;
+        SessionRecorder stopped = recorder;
+        recorder = null;
+        recording = null;
+        stopped.close();
+        return file;
     }
 
     /***
-     * Send the model a disconnect command. Used by the view when closing the JoystickActivity.
+     * Send the model a disconnect command. Used by the ConnectionManager when the connection is
+     * released or replaced.
      */
     public void disconnect() {
+        synchronized (this) {
+            ticker.stop();
+        }
+        outputScheduler.shutdownNow();
+        try {
+            stopRecording();
+        } catch (IOException e) {
+            // The session is lost either way.
+        }
         model.disconnect();
     }
 
@@ -0,0 +1,76 @@
+package com.example.exercise4.ViewModel;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Choreographer;
+
+/**
+ * A ControlTicker ticking once per display frame, aligned to the vsync, so exactly one control
+ * frame is sent per frame the user sees.
+ * Choreographer delivers its callbacks on the thread whose Looper it was taken on, so the ticks
+ * run on a thread of their own rather than on the UI thread.
+ * Choreographer was added in API 16 - check isSupported before creating one.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class VsyncTicker implements ControlTicker, Choreographer.FrameCallback {
+
+    private HandlerThread thread;
+    private Handler handler;
+    // Only used on the ticker's thread:
+    private Choreographer choreographer;
+    private Runnable tick;
+
+    /**
+     * @return boolean - whether the device has a Choreographer (API 16 and above).
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    @Override
+    public synchronized void start(final Runnable tick) {
+        thread = new HandlerThread("VsyncControlThread");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                VsyncTicker.this.tick = tick;
+                choreographer = Choreographer.getInstance();
+                choreographer.postFrameCallback(VsyncTicker.this);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        final HandlerThread stopped = thread;
+        thread = null;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                choreographer.removeFrameCallback(VsyncTicker.this);
+                tick = null;
+                stopped.quit();
+            }
+        });
+    }
+
+    /**
+     * Tick, and ask for the next frame. Runs on the ticker's thread.
+     * @param frameTimeNanos long - when the frame started rendering, NOT USED.
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (tick == null) {
+            return;
+        }
+        tick.run();
+        choreographer.postFrameCallback(this);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.exercise4.View.ViewObjects;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AxisCalibration.
+ */
+public class AxisCalibrationTest {
+
+    @Test
+    public void centered_scalesEachSideAndAppliesDeadZone() {
+        // An off-center stick: rests at 0.2 in -1 - 1.
+        AxisCalibration calibration = new AxisCalibration(-1, 0.2f, 1, 0.1f, false);
+        assertEquals(0, calibration.centered(0.2f), 0);
+        assertEquals(0, calibration.centered(0.25f), 0);
+        assertEquals(1, calibration.centered(1), 1e-6);
+        assertEquals(-1, calibration.centered(-1), 1e-6);
+        // Halfway to the high end, past the dead zone: (0.5 - 0.1) / 0.9.
+        assertEquals(0.4f / 0.9f, calibration.centered(0.6f), 1e-6);
+        // Out of range reads as full deflection.
+        assertEquals(-1, calibration.centered(-2), 1e-6);
+
+        AxisCalibration inverted = new AxisCalibration(-1, 0, 1, 0, true);
+        assertEquals(-0.5f, inverted.centered(0.5f), 1e-6);
+    }
+
+    @Test
+    public void unipolar_hasDeadZoneAtRestEnd() {
+        AxisCalibration calibration = new AxisCalibration(-1, 0, 1, 0.1f, false);
+        assertEquals(0, calibration.unipolar(-1), 0);
+        assertEquals(0, calibration.unipolar(-0.85f), 0);
+        assertEquals(1, calibration.unipolar(1), 1e-6);
+        assertEquals(0.4f / 0.9f, calibration.unipolar(0), 1e-6);
+
+        AxisCalibration inverted = new AxisCalibration(0, 0, 1, 0, true);
+        assertEquals(1, inverted.unipolar(0), 1e-6);
+        assertEquals(0, inverted.unipolar(1), 1e-6);
+    }
+
+    @Test
+    public void of_buildsDeadZoneFromFlat() {
+        assertEquals(0.1f, AxisCalibration.of(-1, 1, 0.1f, 0.02f, false, false).getDeadZone(),
+                1e-6);
+        assertEquals(0.05f, AxisCalibration.of(-1, 1, 0.1f, 0, true, false).getDeadZone(), 1e-6);
+        assertEquals(0.02f, AxisCalibration.of(-1, 1, 0, 0.02f, false, false).getDeadZone(),
+                1e-6);
+        assertEquals(0.5f, AxisCalibration.of(-1, 1, 5, 0, false, false).getDeadZone(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsEmptyRange() {
+        new AxisCalibration(1, 1, 1, 0, false);
+    }
+}
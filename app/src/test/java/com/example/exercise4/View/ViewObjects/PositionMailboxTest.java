@@ -0,0 +1,94 @@
+package com.example.exercise4.View.ViewObjects;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for PositionMailbox.
+ */
+public class PositionMailboxTest {
+
+    @Test
+    public void take_returnsNewestPositionOnce() {
+        PositionMailbox mailbox = new PositionMailbox();
+        PositionMailbox.Position position = new PositionMailbox.Position();
+        assertFalse(mailbox.take(position));
+
+        mailbox.publish(10, 20, 100, 1, false);
+        mailbox.publish(30, -40, 100, 2, true);
+        assertTrue(mailbox.take(position));
+        assertEquals(30, position.getX(), 0);
+        assertEquals(-40, position.getY(), 0);
+        assertEquals(100, position.getScale(), 0);
+        assertEquals(2, position.getTime());
+        assertTrue(position.isReleased());
+        assertFalse(mailbox.take(position));
+    }
+
+    @Test
+    public void publish_handsOverTheSampleBeforeTheNewestAndTheOldestInputTime() {
+        PositionMailbox mailbox = new PositionMailbox();
+        PositionMailbox.Position position = new PositionMailbox.Position();
+        TouchSamples samples = new TouchSamples();
+        samples.add(0.1f, 0.2f, 10);
+        samples.add(0.3f, 0.4f, 11);
+        samples.add(0.5f, 0.6f, 12);
+        mailbox.publish(samples);
+        assertTrue(mailbox.take(position));
+        assertEquals(0.5f, position.getX(), 0);
+        assertEquals(0.6f, position.getY(), 0);
+        assertEquals(1, position.getScale(), 0);
+        assertEquals(12000000, position.getTime());
+        assertEquals(0.3f, position.getPreviousX(), 0);
+        assertEquals(0.4f, position.getPreviousY(), 0);
+        assertEquals(11000000, position.getPreviousTime());
+        assertEquals(10000000, position.getInputTime());
+
+        // Single samples, the first one not taken before the second replaced it.
+        samples.clear();
+        samples.add(0.7f, 0.8f, 13);
+        mailbox.publish(samples);
+        samples.clear();
+        samples.add(0.9f, 1, 14);
+        samples.setReleased(true);
+        mailbox.publish(samples);
+        assertTrue(mailbox.take(position));
+        assertEquals(0.9f, position.getX(), 0);
+        assertTrue(position.isReleased());
+        assertEquals(0.7f, position.getPreviousX(), 0);
+        assertEquals(13000000, position.getPreviousTime());
+        assertEquals(13000000, position.getInputTime());
+    }
+
+    @Test
+    public void take_neverSeesHalfPublishedPosition() throws InterruptedException {
+        final PositionMailbox mailbox = new PositionMailbox();
+        final int count = 200000;
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= count; i++) {
+                    mailbox.publish(i, -i, i, i, i % 2 == 0);
+                }
+            }
+        });
+        publisher.start();
+        PositionMailbox.Position position = new PositionMailbox.Position();
+        long last = 0;
+        while (last < count) {
+            if (mailbox.take(position)) {
+                long time = position.getTime();
+                assertTrue(time > last);
+                assertEquals(time, position.getX(), 0);
+                assertEquals(-time, position.getY(), 0);
+                assertEquals(time, position.getScale(), 0);
+                assertEquals(time % 2 == 0, position.isReleased());
+                assertEquals(time - 1, position.getPreviousTime());
+                assertEquals(time - 1, position.getPreviousX(), 0);
+                last = time;
+            }
+        }
+        publisher.join();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.exercise4.ViewModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ControlOutputStage.
+ */
+public class ControlOutputStageTest {
+
+    /**
+     * Records every position sent.
+     */
+    private static class RecordingSink implements ControlOutputStage.Sink {
+        final List<double[]> sent = new ArrayList<>();
+
+        @Override
+        public synchronized void send(double aileron, double elevator) {
+            sent.add(new double[] {aileron, elevator});
+        }
+
+        synchronized int count() {
+            return sent.size();
+        }
+
+        synchronized double[] last() {
+            return sent.get(sent.size() - 1);
+        }
+    }
+
+    private ScheduledExecutorService scheduler;
+    private RecordingSink sink;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        sink = new RecordingSink();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void submit_limitsRateAndKeepsLastPosition() throws InterruptedException {
+        ControlOutputStage stage = new ControlOutputStage(sink, scheduler, 10, 0.01, 0.01);
+        for (int i = 1; i <= 100; i++) {
+            stage.submit(i / 200.0, -i / 200.0);
+        }
+        Thread.sleep(250);
+        assertEquals(100, stage.getSubmittedCount());
+        assertTrue("Sent " + sink.count(), sink.count() <= 3);
+        assertEquals(0.5, sink.last()[0], 1e-9);
+        assertEquals(-0.5, sink.last()[1], 1e-9);
+    }
+
+    @Test
+    public void submit_ignoresChangesSmallerThanStep() throws InterruptedException {
+        ControlOutputStage stage = new ControlOutputStage(sink, scheduler, 1000, 0.1, 0.1);
+        stage.submit(0.5, 0.5);
+        Thread.sleep(5);
+        stage.submit(0.52, 0.48);
+        Thread.sleep(5);
+        assertEquals(1, sink.count());
+    }
+
+    @Test
+    public void submit_sendsCenterRightAway() {
+        ControlOutputStage stage = new ControlOutputStage(sink, scheduler, 1, 0.01, 0.01);
+        stage.submit(0.7, 0.2);
+        stage.submit(0.001, -0.001);
+        assertEquals(2, sink.count());
+        assertEquals(0.0, sink.last()[0], 0);
+        assertEquals(0.0, sink.last()[1], 0);
+    }
+
+    @Test
+    public void submit_sendsOtherAxesWithTheStick() {
+        final List<boolean[]> changes = new ArrayList<>();
+        final List<double[]> sent = new ArrayList<>();
+        ControlOutputStage stage = new ControlOutputStage(new ControlOutputStage.AxesSink() {
+            @Override
+            public void send(double[] values, boolean[] changed) {
+                sent.add(values.clone());
+                changes.add(changed.clone());
+            }
+        }, scheduler, 1e9, 0.01, 0.01, 0.01, 0.01);
+        stage.submit(3, 0.8);
+        assertEquals(1, sent.size());
+        assertArrayEquals(new boolean[] {false, false, false, true}, changes.get(0));
+        assertEquals(0.8, sent.get(0)[3], 1e-9);
+
+        stage.submit(0.3, 0.4);
+        assertEquals(2, sent.size());
+        assertArrayEquals(new boolean[] {true, true, false, false}, changes.get(1));
+        assertEquals(0.8, sent.get(1)[3], 1e-9);
+
+        stage.submit(3, 0.801);
+        assertEquals(2, sent.size());
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.exercise4.ViewModel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ResponseCurve.
+ */
+public class ResponseCurveTest {
+
+    @Test
+    public void apply_linearKeepsValues() {
+        for (double value = -1; value <= 1; value += 0.001) {
+            assertEquals(value, ResponseCurve.LINEAR.apply(value), 1e-6);
+        }
+        assertEquals(1, ResponseCurve.LINEAR.apply(3), 0);
+        assertEquals(-1, ResponseCurve.LINEAR.apply(-3), 0);
+    }
+
+    @Test
+    public void apply_deadZoneReadsAsCenterAndStretchesTheRest() {
+        ResponseCurve curve = new ResponseCurve(0.1, 0);
+        assertEquals(0.0, curve.apply(0.05), 0);
+        assertEquals(0.0, curve.apply(-0.1), 0);
+        assertEquals(0.5, curve.apply(0.55), 1e-6);
+        assertEquals(-0.5, curve.apply(-0.55), 1e-6);
+        assertEquals(1, curve.apply(1), 0);
+    }
+
+    @Test
+    public void apply_expoMatchesTheCurveBetweenTableEntries() {
+        ResponseCurve curve = new ResponseCurve(0, 0.5);
+        for (double value = -1; value <= 1; value += 0.0123) {
+            double expected = 0.5 * value + 0.5 * value * value * value;
+            assertEquals(expected, curve.apply(value), 1e-5);
+        }
+        assertTrue(curve.apply(0.2) < 0.2);
+        assertEquals(1, curve.apply(1), 0);
+    }
+}
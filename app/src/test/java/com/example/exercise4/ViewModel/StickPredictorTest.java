@@ -0,0 +1,55 @@
+package com.example.exercise4.ViewModel;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for StickPredictor.
+ */
+public class StickPredictorTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void predict_extrapolatesByAgeAndHorizon() {
+        StickPredictor predictor = new StickPredictor();
+        predictor.setHorizon(10 * MS);
+        predictor.sample(0.0, 0.5, 100 * MS, false);
+        predictor.sample(0.1, 0.4, 110 * MS, false);
+        assertTrue(predictor.isMoving());
+
+        // 5ms old plus the 10ms horizon, at 0.01 per ms.
+        predictor.predict(115 * MS);
+        assertEquals(0.25, predictor.getX(), 1e-9);
+        assertEquals(0.25, predictor.getY(), 1e-9);
+
+        // The lead is capped, and the axes clamped.
+        predictor.sample(0.9, 0.4, 120 * MS, false);
+        predictor.predict(160 * MS);
+        assertEquals(1, predictor.getX(), 0);
+    }
+
+    @Test
+    public void predict_passesSamplesWhenOffReleasedOrStopped() {
+        StickPredictor predictor = new StickPredictor();
+        predictor.sample(0.0, 0.0, 100 * MS, false);
+        predictor.sample(0.2, 0.0, 110 * MS, false);
+        predictor.predict(120 * MS);
+        assertFalse(predictor.isMoving());
+        assertEquals(0.2, predictor.getX(), 0);
+
+        predictor.setHorizon(10 * MS);
+        predictor.sample(0.0, 0.0, 120 * MS, true);
+        predictor.predict(125 * MS);
+        assertEquals(0.0, predictor.getX(), 0);
+
+        predictor.sample(0.1, 0.0, 130 * MS, false);
+        predictor.sample(0.2, 0.0, 140 * MS, false);
+        predictor.predict(140 * MS + StickPredictor.MAX_SAMPLE_GAP + 1);
+        assertFalse(predictor.isMoving());
+        assertEquals(0.2, predictor.getX(), 0);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.exercise4.Benchmark;
+
+import com.example.exercise4.Model.CommandEncoder;
+import com.example.exercise4.Model.FlightGearClient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a single "set" command: CommandEncoder into a reused buffer, against building a String
+ * and turning it into bytes, as the client originally did. Run with the gc profiler to compare
+ * their allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EncodeBenchmark {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final CommandEncoder encoder = new CommandEncoder();
+    private final byte[] prefix = CommandEncoder.prefix(FlightGearClient.AILERON);
+    private final ByteBuffer buffer = ByteBuffer.allocate(CommandEncoder.maxCommandLength(prefix));
+    private int counter = 0;
+
+    /**
+     * @return double - a different value in [-1, 1) on every call, so nothing is constant folded.
+     */
+    private double nextValue() {
+        counter = (counter + 1) % 2000;
+        return (counter - 1000) / 1000.0;
+    }
+
+    @Benchmark
+    public ByteBuffer encoder() {
+        buffer.clear();
+        encoder.encode(buffer, prefix, nextValue());
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] stringConcatenation() {
+        return ("set " + FlightGearClient.AILERON + " " + nextValue() + "\n\r").getBytes(ASCII);
+    }
+}
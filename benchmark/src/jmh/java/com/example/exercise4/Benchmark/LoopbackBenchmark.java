@@ -0,0 +1,118 @@
+package com.example.exercise4.Benchmark;
+
+import com.example.exercise4.Model.ConnectionEngine;
+import com.example.exercise4.Model.FlightGearClient;
+import com.example.exercise4.Model.NioTransport;
+import com.example.exercise4.Model.SocketTransport;
+import com.example.exercise4.Model.Transport;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole send path over the loopback interface: a coalescing FlightGearClient sending to a
+ * StubFlightGearServer, over each transport.
+ * roundTrip - the time from setting a value until the server read it (see its percentiles).
+ * setControls - how fast the stick can be moved, and (in the serverCommands counter) how many
+ * commands per second actually reach the server.
+ */
+@State(Scope.Benchmark)
+public class LoopbackBenchmark {
+
+    // How long setUp waits for the client to connect, in milliseconds.
+    private static final long CONNECT_TIMEOUT = 5000;
+
+    @Param({"socket", "nio"})
+    public String transport;
+
+    private StubFlightGearServer server;
+    private FlightGearClient client;
+    private int counter = 0;
+
+    /**
+     * Counts the commands the server received during each iteration, reported as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ServerCounters {
+        public long serverCommands;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void setUp(LoopbackBenchmark benchmark) {
+            start = benchmark.server.getCommandCount();
+            serverCommands = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown(LoopbackBenchmark benchmark) {
+            serverCommands = benchmark.server.getCommandCount() - start;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        server = new StubFlightGearServer().start();
+        Transport connection = transport.equals("nio")
+                ? new NioTransport("127.0.0.1", server.getPort())
+                : new SocketTransport("127.0.0.1", server.getPort(),
+                        SocketTransport.DEFAULT_CONNECT_TIMEOUT);
+        client = new FlightGearClient(connection, true);
+        client.connect();
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        while (client.getState() != ConnectionEngine.State.CONNECTED) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Couldn't connect to the stub server.");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.disconnect();
+        server.close();
+    }
+
+    /**
+     * @return double - a value in [-1, 1) different from the previous one, sent exactly with the
+     *         default precision.
+     */
+    private double nextValue() {
+        counter = (counter + 1) % 2000;
+        return (counter - 1000) / 1000.0;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double roundTrip() {
+        double value = nextValue();
+        client.setAileron(value);
+        double received;
+        while ((received = server.getValue(FlightGearClient.AILERON)) != value) {
+            // Spin until the server read it.
+        }
+        return received;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void setControls(ServerCounters counters) {
+        double value = nextValue();
+        client.setControls(value, -value);
+    }
+}
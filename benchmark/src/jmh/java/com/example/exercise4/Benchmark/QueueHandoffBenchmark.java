@@ -0,0 +1,119 @@
+package com.example.exercise4.Benchmark;
+
+import com.example.exercise4.Model.CoalescingCommandQueue;
+import com.example.exercise4.Model.CommandEncoder;
+import com.example.exercise4.Model.CommandQueue;
+import com.example.exercise4.Model.ConnectionEngine;
+import com.example.exercise4.Model.FifoCommandQueue;
+import com.example.exercise4.Model.FlightGearClient;
+import com.example.exercise4.Model.RingCommandQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handing commands from a producer thread (the benchmark's) to a sender thread draining the queue
+ * into frames, like the ConnectionEngine does, without any network.
+ * put - how fast commands can be put while being drained.
+ * handoff - the time from putting a command until the sender took it (the sender's wakeup
+ * latency).
+ * The ordered queues are the FifoCommandQueue and the RingCommandQueue with each of its wait
+ * strategies (blocking the producer when full).
+ */
+@State(Scope.Benchmark)
+public class QueueHandoffBenchmark {
+
+    @Param({"coalescing", "fifo", "ring-blocking", "ring-yielding", "ring-spin"})
+    public String queueType;
+
+    private CommandQueue queue;
+    private Thread sender;
+    // Written by the sender thread only.
+    private volatile long drained = 0;
+    private ByteBuffer command;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = createQueue(queueType);
+        byte[] prefix = CommandEncoder.prefix(FlightGearClient.AILERON);
+        command = ByteBuffer.allocate(CommandEncoder.maxCommandLength(prefix));
+        new CommandEncoder().encode(command, prefix, 0.5);
+        command.flip();
+        drained = 0;
+        sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer frame = ByteBuffer.allocate(ConnectionEngine.FRAME_SIZE);
+                try {
+                    int count;
+                    while ((count = queue.drainTo(frame)) >= 0) {
+                        drained += count;
+                        frame.clear();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "QueueHandoffBenchmark-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    private static CommandQueue createQueue(String type) {
+        switch (type) {
+            case "fifo":
+                return new FifoCommandQueue();
+            case "ring-blocking":
+                return new RingCommandQueue(RingCommandQueue.DEFAULT_CAPACITY,
+                        RingCommandQueue.WaitStrategy.BLOCKING, RingCommandQueue.Overflow.BLOCK);
+            case "ring-yielding":
+                return new RingCommandQueue(RingCommandQueue.DEFAULT_CAPACITY,
+                        RingCommandQueue.WaitStrategy.YIELDING, RingCommandQueue.Overflow.BLOCK);
+            case "ring-spin":
+                return new RingCommandQueue(RingCommandQueue.DEFAULT_CAPACITY,
+                        RingCommandQueue.WaitStrategy.SPIN_THEN_PARK,
+                        RingCommandQueue.Overflow.BLOCK);
+            default:
+                return new CoalescingCommandQueue();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        queue.clear();
+        queue.close();
+        sender.join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void put() {
+        queue.put(FlightGearClient.AILERON, command);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long handoff() {
+        // Nothing else is pending, so the command is drained on its own.
+        long target = drained + 1;
+        queue.put(FlightGearClient.AILERON, command);
+        long seen;
+        while ((seen = drained) < target) {
+            // Spin - waking up the sender is what's measured.
+        }
+        return seen;
+    }
+}
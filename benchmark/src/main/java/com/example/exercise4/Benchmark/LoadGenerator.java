@@ -0,0 +1,261 @@
+package com.example.exercise4.Benchmark;
+
+import com.example.exercise4.Model.FlightGearClient;
+import com.example.exercise4.Model.LatencyHistogram;
+import com.example.exercise4.Model.NioTransport;
+import com.example.exercise4.Model.ReconnectPolicy;
+import com.example.exercise4.Model.SocketTransport;
+import com.example.exercise4.Model.Transport;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a FlightGearClient like a stick moved non-stop, at a fixed rate for a given duration,
+ * and periodically reports what it takes: the client's send metrics, the heap in use after a GC
+ * (which should stay flat over hours) and the reconnects.
+ * When sending to a StubFlightGearServer, every aileron value is also matched with the time it
+ * was set, for the end-to-end latency up to the server reading it.
+ * Ticks are scheduled at absolute times, so a slow tick doesn't shift the following ones.
+ * Run from the command line with "./gradlew :benchmark:runLoadGenerator -PloadArgs='...'", see
+ * main for the arguments.
+ */
+public class LoadGenerator implements Runnable {
+
+    // Distinct aileron values sent before repeating - values are matched to their send times.
+    private static final int VALUE_COUNT = 20000;
+
+    private final FlightGearClient client;
+    private final long tickNanos;
+    private final long durationNanos;
+    private long reportNanos = TimeUnit.SECONDS.toNanos(10);
+    private PrintStream out = System.out;
+
+    // Read by the server's thread.
+    private final AtomicLongArray sendTimes = new AtomicLongArray(VALUE_COUNT);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram intervalLatency = new LatencyHistogram();
+    private volatile long sentCount = 0;
+    private long firstHeapUsed = -1;
+    private long maxHeapUsed = 0;
+
+    /**
+     * LoadGenerator's constructor.
+     * @param client FlightGearClient - the client to drive, connected or about to be.
+     * @param rate double - the stick updates per second.
+     * @param duration long - how long to run.
+     * @param unit TimeUnit - the duration's unit.
+     */
+    public LoadGenerator(FlightGearClient client, double rate, long duration, TimeUnit unit) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be positive.");
+        }
+        this.client = client;
+        this.tickNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        this.durationNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Measure the end-to-end latency of the values given server receives.
+     * @param server StubFlightGearServer - the server the client sends to.
+     */
+    public void measure(StubFlightGearServer server) {
+        server.setListener(new StubFlightGearServer.Listener() {
+            @Override
+            public void onSet(String path, double value, long arrivalTime) {
+                if (path.equals(FlightGearClient.AILERON)) {
+                    long sendTime = sendTimes.get(
+                            (int) Math.round((value + 1) * (VALUE_COUNT / 2)) % VALUE_COUNT);
+                    if (sendTime != 0) {
+                        latency.record(arrivalTime - sendTime);
+                        intervalLatency.record(arrivalTime - sendTime);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Set how often a report is printed.
+     * @param interval long - the interval, 0 for no reports.
+     * @param unit TimeUnit - the interval's unit.
+     * @param out PrintStream - where reports are printed.
+     */
+    public void setReports(long interval, TimeUnit unit, PrintStream out) {
+        this.reportNanos = unit.toNanos(interval);
+        this.out = out;
+    }
+
+    /**
+     * Send at the rate until the duration passed, printing a report every interval and at the end.
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        long nextReport = start + reportNanos;
+        long nextTick = start;
+        long sequence = 0;
+        while (nextTick < end) {
+            long now = System.nanoTime();
+            if (now < nextTick) {
+                LockSupport.parkNanos(nextTick - now);
+                continue;
+            }
+            int index = (int) (sequence++ % VALUE_COUNT);
+            double aileron = index / (VALUE_COUNT / 2.0) - 1;
+            sendTimes.set(index, now);
+            client.getSendMetrics().onInput(now);
+            client.setControls(aileron, Math.sin(sequence / 100.0));
+            sentCount = sequence;
+            nextTick += tickNanos;
+            if (reportNanos > 0 && now >= nextReport) {
+                report(now - start);
+                nextReport += reportNanos;
+            }
+        }
+        if (reportNanos > 0 && nextReport - reportNanos + tickNanos < end) {
+            report(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Print a report line of the metrics, then start a new latency interval.
+     * @param elapsed long - the time since starting, in nanoseconds.
+     */
+    private void report(long elapsed) {
+        long heapUsed = heapUsedAfterGc();
+        if (firstHeapUsed < 0) {
+            firstHeapUsed = heapUsed;
+        }
+        maxHeapUsed = Math.max(maxHeapUsed, heapUsed);
+        client.getSendMetrics().sampleRates(System.nanoTime());
+        out.println(String.format("[%ds] sent %d heap %dKB",
+                TimeUnit.NANOSECONDS.toSeconds(elapsed), sentCount, heapUsed / 1024));
+        if (intervalLatency.getCount() > 0) {
+            out.println("end-to-end " + intervalLatency);
+        }
+        out.print(client.getSendMetrics());
+        out.println(client.getLinkStats());
+        intervalLatency.reset();
+    }
+
+    private static long heapUsedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return long - the stick updates sent so far.
+     */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * @return LatencyHistogram - the end-to-end latencies of the whole run (only when measuring a
+     *         StubFlightGearServer).
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return long - the heap in use after a GC at the first report, in bytes, or -1 before it.
+     */
+    public long getFirstHeapUsed() {
+        return firstHeapUsed;
+    }
+
+    /**
+     * @return long - the most heap in use after a GC at any report, in bytes.
+     */
+    public long getMaxHeapUsed() {
+        return maxHeapUsed;
+    }
+
+    /**
+     * Run a soak test against a local StubFlightGearServer (or a real simulator with --host).
+     * Arguments, all optional:
+     * --rate HZ (120), --seconds S (60), --transport socket|nio (socket), --report S (10),
+     * --host HOST --port PORT (send to a real server instead of a local stub),
+     * --latency-ms MS, --slow-reads CHUNK:DELAY_MS, --disconnect-every S (stub faults).
+     * @param args String[] - the arguments.
+     * @throws IOException if the stub server couldn't be started.
+     */
+    public static void main(String[] args) throws IOException {
+        double rate = 120;
+        long seconds = 60;
+        long report = 10;
+        String transport = "socket";
+        String host = null;
+        int port = 5400;
+        long latencyMillis = 0;
+        String slowReads = null;
+        long disconnectEvery = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--rate": rate = Double.parseDouble(value); break;
+                case "--seconds": seconds = Long.parseLong(value); break;
+                case "--report": report = Long.parseLong(value); break;
+                case "--transport": transport = value; break;
+                case "--host": host = value; break;
+                case "--port": port = Integer.parseInt(value); break;
+                case "--latency-ms": latencyMillis = Long.parseLong(value); break;
+                case "--slow-reads": slowReads = value; break;
+                case "--disconnect-every": disconnectEvery = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        final StubFlightGearServer server = host == null ? new StubFlightGearServer() : null;
+        ScheduledExecutorService faults = Executors.newSingleThreadScheduledExecutor();
+        if (server != null) {
+            server.setRecordCapacity(0);
+            server.setLatency(latencyMillis, TimeUnit.MILLISECONDS);
+            if (slowReads != null) {
+                String[] parts = slowReads.split(":");
+                server.setSlowReads(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+            }
+            if (disconnectEvery > 0) {
+                faults.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run() {
+                        server.disconnectClients();
+                    }
+                }, disconnectEvery, disconnectEvery, TimeUnit.SECONDS);
+            }
+            server.start();
+            host = "127.0.0.1";
+            port = server.getPort();
+        }
+        Transport connection = transport.equals("nio") ? new NioTransport(host, port)
+                : new SocketTransport(host, port, SocketTransport.DEFAULT_CONNECT_TIMEOUT);
+        FlightGearClient client = new FlightGearClient(connection, true);
+        client.setReconnectPolicy(new ReconnectPolicy());
+        client.connect();
+
+        LoadGenerator generator = new LoadGenerator(client, rate, seconds, TimeUnit.SECONDS);
+        generator.setReports(report, TimeUnit.SECONDS, System.out);
+        if (server != null) {
+            generator.measure(server);
+        }
+        generator.run();
+
+        faults.shutdownNow();
+        client.disconnect();
+        if (server != null) {
+            server.close();
+        }
+        System.out.println(String.format("Done: sent %d, end-to-end %s, heap %dKB -> max %dKB",
+                generator.getSentCount(), generator.getLatency(),
+                generator.getFirstHeapUsed() / 1024, generator.getMaxHeapUsed() / 1024));
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.exercise4.Benchmark;
+
+import com.example.exercise4.Model.FlightGearClient;
+import com.example.exercise4.Model.NioTransport;
+import com.example.exercise4.Model.SessionReader;
+import com.example.exercise4.Model.SessionRecorder;
+import com.example.exercise4.Model.SessionReplayer;
+import com.example.exercise4.Model.SocketTransport;
+import com.example.exercise4.Model.Transport;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays a session log recorded by the app through a FlightGearClient, against a simulator or a
+ * local StubFlightGearServer, and reports how fast it was sent. At maximum speed every record is
+ * sent as soon as the previous one was, measuring the throughput of the whole send path.
+ * A synthetic log of a stick moving in circles can be generated first, for runs without a
+ * recording.
+ */
+public class SessionReplay {
+
+    // The update rate of generated logs.
+    private static final int GENERATED_RATE = 60;
+
+    /**
+     * Write a log of the stick moving in circles, at GENERATED_RATE.
+     * @param file File - the log.
+     * @param seconds long - the session's length.
+     * @throws IOException if writing failed.
+     */
+    static void generate(File file, long seconds) throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file);
+        long time = System.nanoTime();
+        long interval = 1000000000L / GENERATED_RATE;
+        String[] paths = {FlightGearClient.AILERON, FlightGearClient.ELEVATOR};
+        double[] values = new double[2];
+        for (long i = 0; i < seconds * GENERATED_RATE; i++) {
+            double angle = 2 * Math.PI * i / GENERATED_RATE;
+            values[0] = Math.cos(angle);
+            values[1] = Math.sin(angle);
+            recorder.record(time + i * interval, paths, values, 2);
+        }
+        recorder.close();
+    }
+
+    /**
+     * Replays a log, e.g. "--file session.fgs --speed max --transport nio", or against a running
+     * simulator with "--host 10.0.0.2 --port 5402 --speed 1". Without a host, a stub server is
+     * started locally. "--generate 600" writes a synthetic log of 10 minutes to the file first.
+     * Without "--fifo" the client coalesces, so at maximum speed the values the connection can't
+     * keep up with are skipped, as they are on the device.
+     * @param args String[] - the arguments.
+     * @throws IOException if the log or the connection failed.
+     * @throws InterruptedException if interrupted while waiting for the server.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File file = null;
+        double speed = 1;
+        long generate = 0;
+        String transport = "socket";
+        String host = null;
+        int port = 5400;
+        boolean fifo = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--fifo")) {
+                fifo = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--file": file = new File(value); break;
+                case "--speed": speed = value.equals("max") ? SessionReplayer.MAX_SPEED
+                        : Double.parseDouble(value); break;
+                case "--generate": generate = Long.parseLong(value); break;
+                case "--transport": transport = value; break;
+                case "--host": host = value; break;
+                case "--port": port = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown argument " + args[i - 1]);
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("A log must be given with --file.");
+        }
+        if (generate > 0) {
+            generate(file, generate);
+        }
+
+        StubFlightGearServer server = host == null ? new StubFlightGearServer() : null;
+        if (server != null) {
+            server.setRecordCapacity(0);
+            server.start();
+            host = "127.0.0.1";
+            port = server.getPort();
+        }
+        Transport connection = transport.equals("nio") ? new NioTransport(host, port)
+                : new SocketTransport(host, port, SocketTransport.DEFAULT_CONNECT_TIMEOUT);
+        FlightGearClient client = new FlightGearClient(connection, !fifo);
+        client.connect();
+
+        SessionReader reader = new SessionReader(file);
+        SessionReplayer replayer = new SessionReplayer(client, reader);
+        replayer.setSpeed(speed);
+        replayer.run();
+        reader.close();
+
+        // Disconnecting drops what's still queued, so let the engine send it first, and the
+        // server read it.
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.getSendMetrics().getQueueDepth() > 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        while (server != null
+                && server.getCommandCount() < client.getSendMetrics().getCommandsSent()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        client.disconnect();
+        if (server != null) {
+            server.close();
+        }
+        if (replayer.getException() != null) {
+            throw replayer.getException();
+        }
+        double seconds = replayer.getDuration() / 1e9;
+        System.out.println(String.format("Replayed %d records (%dKB) in %.3fs: %.0f records/s",
+                replayer.getReplayedCount(), file.length() / 1024, seconds,
+                replayer.getReplayedCount() / seconds));
+        if (server != null) {
+            System.out.println("Server received " + server.getCommandCount() + " commands, "
+                    + client.getSendMetrics().getCommandsCoalesced() + " coalesced, "
+                    + client.getSendMetrics().getCommandsOverflowed() + " overflowed");
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.example.exercise4.Benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for FlightGear's property server, for benchmarks, soak tests and unit tests on
+ * the JVM. Accepts any number of clients on the loopback interface, each read on a thread of its
+ * own, and understands the two commands the Model sends: "set &lt;path&gt; &lt;value&gt;" stores
+ * the value, and "get &lt;path&gt;" is answered like FlightGear does
+ * ("&lt;path&gt; = '&lt;value&gt;' (double)"). Commands may end with "\n", "\r\n" or the Model's
+ * "\n\r".
+ * Every value set is passed to the listener with its arrival time, and the newest ones are kept
+ * (up to the record capacity) for inspection.
+ * Faults can be injected at any time: a latency before each command is applied, slow reads (the
+ * server reads a few bytes at a time and sleeps in between, so the client's socket backs up),
+ * dropping every connected client, and refusing new ones.
+ */
+public class StubFlightGearServer implements Closeable {
+
+    public static final int DEFAULT_RECORD_CAPACITY = 10000;
+
+    /**
+     * Gets every value set, on the client's thread (or, with a latency, the latency's thread).
+     */
+    public interface Listener {
+        void onSet(String path, double value, long arrivalTime);
+    }
+
+    /**
+     * A value received by the server.
+     */
+    public static class Received {
+        public final String path;
+        public final double value;
+        // System.nanoTime() when the command was read.
+        public final long arrivalTime;
+
+        Received(String path, double value, long arrivalTime) {
+            this.path = path;
+            this.value = value;
+            this.arrivalTime = arrivalTime;
+        }
+
+        @Override
+        public String toString() {
+            return path + "=" + value + "@" + arrivalTime;
+        }
+    }
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    // The size of a client's read buffer, and the longest command kept.
+    private static final int BUFFER_SIZE = 4096;
+
+    private final ServerSocket serverSocket;
+    private final CopyOnWriteArrayList<Socket> clients = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, Double> values = new ConcurrentHashMap<>();
+    private final AtomicLong commandCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+    private volatile boolean closed = false;
+    private volatile Listener listener;
+
+    // The newest values received - guarded by itself.
+    private final ArrayDeque<Received> record = new ArrayDeque<>();
+    private volatile int recordCapacity = DEFAULT_RECORD_CAPACITY;
+
+    // Injected faults.
+    private volatile long latencyNanos = 0;
+    private volatile int readChunkSize = BUFFER_SIZE;
+    private volatile long readDelayMillis = 0;
+    private volatile boolean refusing = false;
+    // Applies the commands when there's a latency - created on first use.
+    private ScheduledExecutorService delayed;
+
+    /**
+     * StubFlightGearServer's constructor, listening on a free port. Call start to accept clients.
+     * @throws IOException if the port couldn't be bound.
+     */
+    public StubFlightGearServer() throws IOException {
+        this(0);
+    }
+
+    /**
+     * StubFlightGearServer's constructor. Call start to accept clients.
+     * @param port int - the port to listen on, or 0 for a free one.
+     * @throws IOException if the port couldn't be bound.
+     */
+    public StubFlightGearServer(int port) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+    }
+
+    /**
+     * Start accepting clients on a daemon thread.
+     * @return StubFlightGearServer - this server.
+     */
+    public StubFlightGearServer start() {
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "StubFlightGearServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * @return int - the port the server listens on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Set the listener of every value set.
+     * @param listener Listener - the listener, or null for none.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set how many of the newest received values are kept for getRecord.
+     * @param recordCapacity int - the capacity, 0 for keeping none.
+     */
+    public void setRecordCapacity(int recordCapacity) {
+        this.recordCapacity = recordCapacity;
+        synchronized (record) {
+            while (record.size() > recordCapacity) {
+                record.pollFirst();
+            }
+        }
+    }
+
+    /**
+     * Delay applying every command by given latency, as a slow simulator would. Commands keep
+     * their order and arrival times.
+     * @param latency long - the latency, 0 for none.
+     * @param unit TimeUnit - the latency's unit.
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * Read at most chunkSize bytes at a time, sleeping delayMillis after each read, so the
+     * client's writes back up like they would behind a busy simulator.
+     * @param chunkSize int - the most bytes read at a time.
+     * @param delayMillis long - the sleep after each read, 0 for reading at full speed.
+     */
+    public void setSlowReads(int chunkSize, long delayMillis) {
+        if (chunkSize <= 0 || chunkSize > BUFFER_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be between 1 and " + BUFFER_SIZE);
+        }
+        readChunkSize = chunkSize;
+        readDelayMillis = delayMillis;
+    }
+
+    /**
+     * Close every new connection right after accepting it, or stop doing so.
+     * @param refusing boolean - whether to refuse new clients.
+     */
+    public void setRefusing(boolean refusing) {
+        this.refusing = refusing;
+    }
+
+    /**
+     * Drop every connected client, as if the simulator restarted.
+     */
+    public void disconnectClients() {
+        for (Socket client : clients) {
+            closeQuietly(client);
+        }
+    }
+
+    /**
+     * @param path String - a property path, with or without a leading '/'.
+     * @return double - the last value set for the property, or NaN if none was.
+     */
+    public double getValue(String path) {
+        Double value = values.get(normalize(path));
+        return value == null ? Double.NaN : value;
+    }
+
+    /**
+     * @return long - the number of commands received so far, from all clients.
+     */
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    /**
+     * @return long - the number of clients accepted so far (refused ones included).
+     */
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * @return int - the number of clients connected now.
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return List - the newest values received, oldest first, up to the record capacity.
+     */
+    public List<Received> getRecord() {
+        synchronized (record) {
+            return new ArrayList<>(record);
+        }
+    }
+
+    /**
+     * Forget the recorded values.
+     */
+    public void clearRecord() {
+        synchronized (record) {
+            record.clear();
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                final Socket client = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                if (refusing) {
+                    closeQuietly(client);
+                    continue;
+                }
+                client.setTcpNoDelay(true);
+                clients.add(client);
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(client);
+                    }
+                }, "StubFlightGearServer-client");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                // Closed, or a failed accept - the loop checks which.
+            }
+        }
+    }
+
+    /**
+     * Read and apply the commands of a client until it disconnects.
+     * @param client Socket - the client's socket.
+     */
+    private void serve(Socket client) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        try {
+            InputStream in = client.getInputStream();
+            OutputStream out = client.getOutputStream();
+            while (true) {
+                if (length == buffer.length) {
+                    length = 0; // A command too long to be real - drop it.
+                }
+                int count = in.read(buffer, length,
+                        Math.min(readChunkSize, buffer.length - length));
+                if (count < 0) {
+                    return;
+                }
+                long arrivalTime = System.nanoTime();
+                int end = length + count;
+                int start = 0;
+                for (int i = length; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        String line = new String(buffer, start, i - start, ASCII);
+                        handle(line.trim(), out, arrivalTime);
+                        start = i + 1;
+                    }
+                }
+                length = end - start;
+                System.arraycopy(buffer, start, buffer, 0, length);
+                long delay = readDelayMillis;
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+            }
+        } catch (IOException e) {
+            // The client disconnected.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            clients.remove(client);
+            closeQuietly(client);
+        }
+    }
+
+    /**
+     * Apply a single command line.
+     * @param line String - the command, trimmed.
+     * @param out OutputStream - the client's output, for responses.
+     * @param arrivalTime long - System.nanoTime() when the line was read.
+     * @throws IOException if a response couldn't be written.
+     */
+    private void handle(String line, final OutputStream out, final long arrivalTime)
+            throws IOException {
+        if (line.isEmpty()) {
+            return;
+        }
+        commandCount.incrementAndGet();
+        final String[] parts = line.split(" ");
+        long latency = latencyNanos;
+        if (latency > 0) {
+            delayed().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        apply(parts, out, arrivalTime);
+                    } catch (IOException e) {
+                        // The client disconnected meanwhile.
+                    }
+                }
+            }, latency, TimeUnit.NANOSECONDS);
+        } else {
+            apply(parts, out, arrivalTime);
+        }
+    }
+
+    private void apply(String[] parts, OutputStream out, long arrivalTime) throws IOException {
+        if (parts.length == 3 && parts[0].equals("set")) {
+            double value;
+            try {
+                value = Double.parseDouble(parts[2]);
+            } catch (NumberFormatException e) {
+                return; // FlightGear ignores values it can't parse as well.
+            }
+            String path = normalize(parts[1]);
+            values.put(path, value);
+            recordValue(new Received(path, value, arrivalTime));
+            Listener current = listener;
+            if (current != null) {
+                current.onSet(path, value, arrivalTime);
+            }
+        } else if (parts.length == 2 && parts[0].equals("get")) {
+            String response = parts[1] + " = '" + getValue(parts[1]) + "' (double)\r\n";
+            synchronized (out) {
+                out.write(response.getBytes(ASCII));
+                out.flush();
+            }
+        }
+    }
+
+    private void recordValue(Received received) {
+        int capacity = recordCapacity;
+        if (capacity == 0) {
+            return;
+        }
+        synchronized (record) {
+            if (record.size() >= capacity) {
+                record.pollFirst();
+            }
+            record.addLast(received);
+        }
+    }
+
+    private synchronized ScheduledExecutorService delayed() {
+        if (delayed == null) {
+            // A single thread keeps the commands in order.
+            delayed = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "StubFlightGearServer-latency");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return delayed;
+    }
+
+    /**
+     * Stop accepting clients and disconnect the connected ones.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(serverSocket);
+        disconnectClients();
+        synchronized (this) {
+            if (delayed != null) {
+                delayed.shutdownNow();
+            }
+        }
+    }
+
+    private static String normalize(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do with it.
+        }
+    }
+}
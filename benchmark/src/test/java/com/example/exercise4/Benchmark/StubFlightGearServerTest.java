@@ -0,0 +1,121 @@
+package com.example.exercise4.Benchmark;
+
+import com.example.exercise4.Model.ConnectionEngine;
+import com.example.exercise4.Model.FlightGearClient;
+import com.example.exercise4.Model.ReconnectPolicy;
+import com.example.exercise4.Model.SocketTransport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StubFlightGearServerTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private StubFlightGearServer server;
+    private FlightGearClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubFlightGearServer().start();
+        client = new FlightGearClient(new SocketTransport("127.0.0.1", server.getPort(),
+                SocketTransport.DEFAULT_CONNECT_TIMEOUT), true);
+        client.setReconnectPolicy(new ReconnectPolicy(10, 50, 2.0, 0, 0));
+        client.connect();
+        waitFor(new Condition() {
+            @Override
+            public boolean met() {
+                return client.getState() == ConnectionEngine.State.CONNECTED;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        client.disconnect();
+        server.close();
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.met()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private void waitForValue(final String path, final double value) throws InterruptedException {
+        waitFor(new Condition() {
+            @Override
+            public boolean met() {
+                return server.getValue(path) == value;
+            }
+        });
+    }
+
+    @Test
+    public void recordsValuesWithArrivalTimes() throws Exception {
+        long before = System.nanoTime();
+        client.setAileron(0.25);
+        waitForValue(FlightGearClient.AILERON, 0.25);
+        client.setElevator(-0.5);
+        waitForValue(FlightGearClient.ELEVATOR, -0.5);
+
+        List<StubFlightGearServer.Received> record = server.getRecord();
+        assertEquals(2, record.size());
+        assertEquals(FlightGearClient.AILERON, record.get(0).path);
+        assertEquals(0.25, record.get(0).value, 0);
+        assertTrue(record.get(0).arrivalTime >= before);
+        assertTrue(record.get(1).arrivalTime >= record.get(0).arrivalTime);
+    }
+
+    @Test
+    public void injectedLatencyDelaysValues() throws Exception {
+        server.setLatency(200, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        client.setAileron(0.75);
+        waitForValue(FlightGearClient.AILERON, 0.75);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void clientReconnectsAndResyncsAfterDisconnect() throws Exception {
+        client.setAileron(0.5);
+        waitForValue(FlightGearClient.AILERON, 0.5);
+
+        server.disconnectClients();
+        // The client only notices the disconnect when a write fails, so keep writing. The values
+        // lost meanwhile are resent by the resync.
+        waitFor(new Condition() {
+            @Override
+            public boolean met() {
+                client.setElevator(0.125);
+                return server.getConnectionCount() == 2;
+            }
+        });
+        waitForValue(FlightGearClient.ELEVATOR, 0.125);
+        assertEquals(0.5, server.getValue(FlightGearClient.AILERON), 0);
+        assertEquals(1, client.getLinkStats().getReconnectCount());
+    }
+
+    @Test
+    public void loadGeneratorMeasuresEndToEndLatency() {
+        LoadGenerator generator = new LoadGenerator(client, 120, 500, TimeUnit.MILLISECONDS);
+        generator.setReports(0, TimeUnit.SECONDS, System.out);
+        generator.measure(server);
+        generator.run();
+        assertTrue(generator.getSentCount() >= 55);
+        assertTrue(generator.getLatency().getCount() > 0);
+    }
+}
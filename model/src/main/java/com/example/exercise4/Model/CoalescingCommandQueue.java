@@ -0,0 +1,246 @@
+package com.example.exercise4.Model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A CommandQueue which keeps a single slot per key, holding only the newest command given for it
+ * ("last writer wins"). When a command is put while an older one with the same key is still
+ * waiting, the older one is replaced and counted as coalesced, so the sender thread always sends
+ * the current value and never a backlog of stale ones.
+ * The number of distinct keys is bounded, which bounds the memory used by the queue no matter how
+ * fast commands are put. Slots are kept and reused after being sent, so once every key was seen
+ * putting and draining commands doesn't allocate.
+ */
+public class CoalescingCommandQueue implements CommandQueue {
+
+    public static final int DEFAULT_MAX_KEYS = 64;
+
+    /**
+     * The latest command of a single key.
+     */
+    private static class Slot {
+        final byte[] data = new byte[MAX_COMMAND_LENGTH];
+        int length = 0;
+        boolean pending = false;
+    }
+
+    private final HashMap<String, Slot> slots = new HashMap<>();
+    // The pending slots, in the order they first became pending.
+    private final ArrayDeque<Slot> pending;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final int maxKeys;
+    private boolean closed = false;
+
+    private long putCount = 0;
+    private long coalescedCount = 0;
+
+    /**
+     * CoalescingCommandQueue's constructor, with DEFAULT_MAX_KEYS as the maximum keys.
+     */
+    public CoalescingCommandQueue() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * CoalescingCommandQueue's constructor.
+     * @param maxKeys int - the maximum number of distinct keys the queue can hold.
+     */
+    public CoalescingCommandQueue(int maxKeys) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys must be positive.");
+        }
+        this.maxKeys = maxKeys;
+        this.pending = new ArrayDeque<>(maxKeys);
+    }
+
+    /**
+     * Replace the pending command of given key with given command, or make the key's slot pending
+     * if it isn't.
+     * @param key String - the key. Must not be null.
+     * @param command ByteBuffer - the encoded command.
+     * @throws IllegalStateException if a new slot is needed while maxKeys slots exist.
+     */
+    @Override
+    public void put(String key, ByteBuffer command) {
+        checkCommand(key, command);
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (!slots.containsKey(key) && slots.size() >= maxKeys) {
+                throw new IllegalStateException("Too many keys (max " + maxKeys + ").");
+            }
+            putLocked(key, command);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put all given commands under a single lock, so a drainTo call takes either all of them or
+     * none of them (as long as they fit in its frame).
+     * @param keys String[] - the keys. Must not contain null.
+     * @param commands ByteBuffer[] - the encoded commands.
+     * @param count int - the number of commands to add.
+     * @throws IllegalStateException if the new slots needed would exceed maxKeys.
+     */
+    @Override
+    public void putAll(String[] keys, ByteBuffer[] commands, int count) {
+        for (int i = 0; i < count; i++) {
+            checkCommand(keys[i], commands[i]);
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            int newKeys = 0;
+            for (int i = 0; i < count; i++) {
+                if (!slots.containsKey(keys[i])) {
+                    newKeys++;
+                }
+            }
+            if (slots.size() + newKeys > maxKeys) {
+                throw new IllegalStateException("Too many keys (max " + maxKeys + ").");
+            }
+            for (int i = 0; i < count; i++) {
+                putLocked(keys[i], commands[i]);
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param key String - a key given to put.
+     * @param command ByteBuffer - a command given to put.
+     */
+    private static void checkCommand(String key, ByteBuffer command) {
+        if (key == null) {
+            throw new IllegalArgumentException("CoalescingCommandQueue requires a key.");
+        }
+        if (command.remaining() > MAX_COMMAND_LENGTH) {
+            throw new IllegalArgumentException("Command is longer than "
+                    + MAX_COMMAND_LENGTH + " bytes.");
+        }
+    }
+
+    /**
+     * Copy given command into the slot of given key, creating the slot if needed.
+     * Must be called while holding the lock, after checking maxKeys.
+     * @param key String - the key.
+     * @param command ByteBuffer - the encoded command.
+     */
+    private void putLocked(String key, ByteBuffer command) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            slot = new Slot();
+            slots.put(key, slot);
+        }
+        putCount++;
+        if (slot.pending) {
+            coalescedCount++;
+        } else {
+            slot.pending = true;
+            pending.addLast(slot);
+        }
+        // Read without duplicate(), which would allocate a new buffer object.
+        int position = command.position();
+        slot.length = command.remaining();
+        command.get(slot.data, 0, slot.length);
+        command.position(position);
+    }
+
+    @Override
+    public int drainTo(ByteBuffer frame) throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            if (pending.isEmpty()) { // Closed and drained.
+                return -1;
+            }
+            int count = 0;
+            Slot slot;
+            while ((slot = pending.peekFirst()) != null && slot.length <= frame.remaining()) {
+                frame.put(slot.data, 0, slot.length);
+                slot.pending = false;
+                pending.pollFirst();
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (Slot slot : pending) {
+                slot.pending = false;
+            }
+            pending.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return long - the number of commands put into the queue so far.
+     */
+    public long getPutCount() {
+        lock.lock();
+        try {
+            return putCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return long - the number of commands which were replaced by a newer one before being sent.
+     */
+    public long getCoalescedCount() {
+        lock.lock();
+        try {
+            return coalescedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return int - the number of keys currently pending.
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
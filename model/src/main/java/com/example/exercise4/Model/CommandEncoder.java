@@ -0,0 +1,147 @@
+package com.example.exercise4.Model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes FlightGear "set &lt;path&gt; &lt;value&gt;\n\r" commands directly into a ByteBuffer,
+ * without creating any String, StringBuilder or byte array on the way.
+ * The "set &lt;path&gt; " part of a command is expected to be precomputed once per property with
+ * the prefix method, and the value is written as ASCII with a fixed number of digits after the
+ * decimal point.
+ * A CommandEncoder isn't thread safe, every thread encoding commands should use its own.
+ */
+public class CommandEncoder {
+
+    public static final int DEFAULT_PRECISION = 4;
+    public static final int MAX_PRECISION = 9;
+    // The longest value that can be written: sign, 10 integer digits, point and MAX_PRECISION.
+    public static final int MAX_VALUE_LENGTH = 1 + 10 + 1 + MAX_PRECISION;
+    // Keeps |value| * 10^MAX_PRECISION inside a long, and the integer part inside 10 digits.
+    public static final double MAX_ABS_VALUE = 9e9;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] BREAK = {'\n', '\r'};
+    private static final long[] POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int precision;
+    private final long scale;
+    // Scratch space for writing the integer digits backwards.
+    private final byte[] digits = new byte[19];
+
+    /**
+     * CommandEncoder's constructor, writing values with DEFAULT_PRECISION digits after the point.
+     */
+    public CommandEncoder() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * CommandEncoder's constructor.
+     * @param precision int - the number of digits written after the decimal point (0 -
+     *                  MAX_PRECISION).
+     */
+    public CommandEncoder(int precision) {
+        if (precision < 0 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 0 and "
+                    + MAX_PRECISION + ".");
+        }
+        this.precision = precision;
+        this.scale = POWERS_OF_TEN[precision];
+    }
+
+    /**
+     * Creates the "set &lt;path&gt; " prefix of the commands for given property path.
+     * Meant to be called once per property, and the result kept.
+     * @param path String - the property path.
+     * @return byte[] - the prefix as ASCII bytes.
+     */
+    public static byte[] prefix(String path) {
+        return ("set " + path + " ").getBytes(ASCII);
+    }
+
+    /**
+     * Creates the complete "get &lt;path&gt;" command, which asks the server for the current value
+     * of given property path. Meant to be called once per property, and the result kept.
+     * @param path String - the property path.
+     * @return byte[] - the command as ASCII bytes.
+     */
+    public static byte[] request(String path) {
+        return ("get " + path + "\r\n").getBytes(ASCII);
+    }
+
+    /**
+     * @return int - the number of digits written after the decimal point.
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @param prefix byte[] - a prefix created by the prefix method.
+     * @return int - the maximum number of bytes a command with given prefix can take.
+     */
+    public static int maxCommandLength(byte[] prefix) {
+        return prefix.length + MAX_VALUE_LENGTH + BREAK.length;
+    }
+
+    /**
+     * Write a full command, made of given prefix, given value and the line break, into given
+     * buffer at its current position.
+     * @param dst ByteBuffer - the buffer to write to.
+     * @param prefix byte[] - a prefix created by the prefix method.
+     * @param value double - the property's value.
+     * @throws java.nio.BufferOverflowException if the command doesn't fit in the buffer.
+     */
+    public void encode(ByteBuffer dst, byte[] prefix, double value) {
+        dst.put(prefix);
+        putDouble(dst, value);
+        dst.put(BREAK);
+    }
+
+    /**
+     * Write given value as ASCII into given buffer at its current position, rounded to precision
+     * digits after the decimal point (e.g. -0.25 is written as "-0.2500" with precision 4).
+     * @param dst ByteBuffer - the buffer to write to.
+     * @param value double - the value. Must be finite and smaller than MAX_ABS_VALUE in
+     *              absolute value.
+     */
+    public void putDouble(ByteBuffer dst, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= MAX_ABS_VALUE) {
+            throw new IllegalArgumentException("Cannot encode value " + value + ".");
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            dst.put((byte) '-');
+        }
+        putLong(dst, scaled / scale);
+        if (precision > 0) {
+            dst.put((byte) '.');
+            long fraction = scaled % scale;
+            for (long p = scale / 10; p > 0; p /= 10) {
+                dst.put((byte) ('0' + fraction / p));
+                fraction %= p;
+            }
+        }
+    }
+
+    /**
+     * Write given non negative value as ASCII digits into given buffer.
+     * @param dst ByteBuffer - the buffer to write to.
+     * @param value long - the value.
+     */
+    private void putLong(ByteBuffer dst, long value) {
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        dst.put(digits, i, digits.length - i);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.exercise4.Model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A queue of encoded commands waiting to be sent to the server by the ConnectionEngine's
+ * thread. Every command is given with a key describing what it refers to (for example the property
+ * path it sets), which lets implementations decide whether an older command is still worth sending.
+ * Commands are copied into the queue, so the buffers given to it can be reused right after.
+ */
+public interface CommandQueue {
+
+    // The longest command a queue accepts, in bytes.
+    int MAX_COMMAND_LENGTH = 256;
+
+    /**
+     * Add the remaining bytes of given buffer to the queue as a single command. The buffer's
+     * position is left unchanged.
+     * @param key String - what the command refers to. May be null for commands without a key.
+     * @param command ByteBuffer - the encoded command, at most MAX_COMMAND_LENGTH bytes.
+     */
+    void put(String key, ByteBuffer command);
+
+    /**
+     * Add the first count given commands to the queue at once, so drainTo takes them together.
+     * @param keys String[] - the key of each command (elements may be null).
+     * @param commands ByteBuffer[] - the encoded commands.
+     * @param count int - the number of commands to add.
+     */
+    void putAll(String[] keys, ByteBuffer[] commands, int count);
+
+    /**
+     * Wait until a command is available, then move as many available commands as fit into given
+     * frame, in the order they should be sent. Commands which don't fit stay on the queue.
+     * @param frame ByteBuffer - the buffer to write the commands to. Must have at least
+     *              MAX_COMMAND_LENGTH bytes remaining.
+     * @return int - the number of commands written, or -1 if the queue was closed and every
+     *         command put before closing it was already taken.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    int drainTo(ByteBuffer frame) throws InterruptedException;
+
+    /**
+     * @return int - the number of commands waiting to be taken.
+     */
+    int size();
+
+    /**
+     * Remove every command that wasn't taken yet.
+     */
+    void clear();
+
+    /**
+     * Close the queue. Further commands will be ignored, and once the commands already queued were
+     * taken, any waiting or future drainTo call will return -1. Call clear first to drop them.
+     */
+    void close();
+}
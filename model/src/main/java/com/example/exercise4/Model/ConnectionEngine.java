@@ -0,0 +1,415 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends the commands of a CommandQueue to the server over a Transport, on a thread of its own
+ * executor. Plain Java, so it can be used (and tested) off Android.
+ * The engine goes through the states CONNECTING, CONNECTED, DRAINING and CLOSED, each reported to
+ * the listener on the callback executor (direct by default, any thread the engine runs on).
+ * An engine can only be started once.
+ * When given a ReconnectPolicy, a lost connection doesn't close the engine: it goes RECONNECTING,
+ * retries with backoff while commands keep collecting on the queue (a CoalescingCommandQueue keeps
+ * only the newest value of each property, bounding this outage buffer), and once connected again
+ * lets the ResyncSource put the current state before sending anything else.
+ * When given a TelemetryParser, everything the server sends back is read on a separate thread,
+ * started for each connection, and parsed into the parser's TelemetrySnapshot.
+ */
+public class ConnectionEngine implements Runnable {
+
+    // The size of the buffer every batch of commands is written into before being sent.
+    public static final int FRAME_SIZE = 8192;
+    // How long a closed connection's receiver is waited for before the next one starts, in
+    // milliseconds. Closing the transport ends its blocked read, so it normally ends right away.
+    static final long RECEIVER_JOIN_TIMEOUT = 1000;
+
+    public enum State { IDLE, CONNECTING, CONNECTED, RECONNECTING, DRAINING, CLOSED }
+
+    /**
+     * Gets notified of the engine's state changes and exceptions.
+     */
+    public interface Listener {
+        void onStateChanged(State state);
+        void onException(Exception e);
+    }
+
+    /**
+     * Puts the current state of whatever the commands control on the queue, so a server which
+     * missed commands during an outage is brought up to date. Called on the engine's thread.
+     */
+    public interface ResyncSource {
+        void resync(CommandQueue queue);
+    }
+
+    // Runs callbacks on the thread which dispatched them.
+    public static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Transport transport;
+    private final CommandQueue commandQueue;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final AtomicReference<State> state = new AtomicReference<>(State.IDLE);
+    private volatile Executor callbackExecutor = DIRECT_EXECUTOR;
+    private volatile Listener listener;
+    private volatile ReconnectPolicy reconnectPolicy;
+    private volatile ResyncSource resyncSource;
+    private volatile TelemetryParser telemetryParser;
+    // The receiver of the current connection, its thread and its reused buffer - used on the
+    // engine's thread.
+    private TelemetryReceiver receiver;
+    private Thread receiverThread;
+    private ByteBuffer receiveBuffer;
+    private final LinkStats linkStats = new LinkStats();
+    private final SendMetrics sendMetrics;
+    private final Random random = new Random();
+    // Waited on between reconnect attempts, notified on disconnect.
+    private final Object reconnectLock = new Object();
+
+    /**
+     * ConnectionEngine's constructor, running on a new single thread executor of its own, which is
+     * shut down once the engine is closed.
+     * @param transport Transport - the connection to the server, not connected yet.
+     * @param commandQueue CommandQueue - the commands to send.
+     */
+    public ConnectionEngine(Transport transport, CommandQueue commandQueue) {
+        this(transport, commandQueue, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ConnectionEngine");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    /**
+     * ConnectionEngine's constructor, running on given executor (which may be shared by several
+     * engines, each taking one of its threads while running).
+     * @param transport Transport - the connection to the server, not connected yet.
+     * @param commandQueue CommandQueue - the commands to send.
+     * @param executor ExecutorService - the executor to run on. Not shut down by the engine.
+     */
+    public ConnectionEngine(Transport transport, CommandQueue commandQueue,
+                            ExecutorService executor) {
+        this(transport, commandQueue, executor, false);
+    }
+
+    private ConnectionEngine(Transport transport, CommandQueue commandQueue,
+                             ExecutorService executor, boolean ownsExecutor) {
+        this.transport = transport;
+        this.commandQueue = commandQueue;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.sendMetrics = new SendMetrics(commandQueue);
+    }
+
+    /**
+     * Set the listener notified of state changes and exceptions.
+     * @param listener Listener
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the executor the listener is called on, e.g. one posting to the UI thread.
+     * @param callbackExecutor Executor
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Set the policy used for reconnecting when the connection is lost, or null to close the
+     * engine on the first failure. Should be set before starting.
+     * @param reconnectPolicy ReconnectPolicy
+     */
+    public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
+    /**
+     * Set the source of the state re-sent after reconnecting.
+     * @param resyncSource ResyncSource
+     */
+    public void setResyncSource(ResyncSource resyncSource) {
+        this.resyncSource = resyncSource;
+    }
+
+    /**
+     * Set the parser of what the server sends back, or null to ignore it. Must be set before
+     * starting.
+     * @param telemetryParser TelemetryParser
+     */
+    public void setTelemetryParser(TelemetryParser telemetryParser) {
+        this.telemetryParser = telemetryParser;
+    }
+
+    /**
+     * @return LinkStats - the reconnect counts and downtimes of the engine.
+     */
+    public LinkStats getLinkStats() {
+        return linkStats;
+    }
+
+    /**
+     * @return SendMetrics - the latencies and counts of the engine's send path. Producers putting
+     *         commands on the queue directly should call its onEnqueue themselves.
+     */
+    public SendMetrics getSendMetrics() {
+        return sendMetrics;
+    }
+
+    /**
+     * @return State - the engine's current state.
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return CommandQueue - the queue the engine sends from.
+     */
+    public CommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    /**
+     * @return Transport - the transport the engine sends over.
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Start connecting on the executor.
+     * @throws IllegalStateException if the engine was already started.
+     */
+    public void start() {
+        if (!state.compareAndSet(State.IDLE, State.CONNECTING)) {
+            throw new IllegalStateException("The engine was already started.");
+        }
+        linkStats.onConnectStarted(System.nanoTime());
+        dispatchState(State.CONNECTING);
+        executor.execute(this);
+    }
+
+    /**
+     * Stop the engine. The commands already queued are sent first if drain is true, or dropped
+     * otherwise, and then the transport is closed.
+     * @param drain boolean - whether to send the queued commands before closing.
+     */
+    public void disconnect(boolean drain) {
+        if (!drain) {
+            commandQueue.clear();
+        }
+        if (state.compareAndSet(State.IDLE, State.CLOSED)) {
+            dispatchState(State.CLOSED);
+            shutdownExecutor();
+        } else if (state.compareAndSet(State.CONNECTING, State.DRAINING)
+                || state.compareAndSet(State.CONNECTED, State.DRAINING)
+                || state.compareAndSet(State.RECONNECTING, State.DRAINING)) {
+            dispatchState(State.DRAINING);
+        }
+        commandQueue.close();
+        synchronized (reconnectLock) {
+            reconnectLock.notifyAll();
+        }
+    }
+
+    /**
+     * Connects the transport to the server, then reads commands from the queue until the queue is
+     * closed and drained (drainTo returns -1). Every time, all of the commands available on the
+     * queue are copied into a single reused frame, which is sent with one write.
+     * If an established connection fails and a reconnect policy is set, reconnects as the policy
+     * allows.
+     * Any other exception is reported to the listener, and the engine is closed.
+     */
+    @Override
+    public void run() {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        int attempt = 0;
+        int frameCommands = 0;
+        boolean connectedOnce = false;
+        boolean wroteOnce = false;
+        try {
+            while (true) {
+                try {
+                    transport.connect();
+                    if (!connectedOnce) {
+                        linkStats.onConnected(System.nanoTime());
+                        connectedOnce = true;
+                    }
+                    startReceiver();
+                    if (attempt > 0) { // Reconnected after losing the connection.
+                        linkStats.onReconnected(System.nanoTime());
+                        attempt = 0;
+                        ResyncSource source = resyncSource;
+                        if (source != null) {
+                            source.resync(commandQueue);
+                        }
+                    }
+                    if (state.compareAndSet(State.CONNECTING, State.CONNECTED)
+                            || state.compareAndSet(State.RECONNECTING, State.CONNECTED)) {
+                        dispatchState(State.CONNECTED);
+                    }
+                    // drainTo returns -1 when the queue was closed - will break the loop.
+                    while ((frameCommands = commandQueue.drainTo(frame)) >= 0) {
+                        sendMetrics.onDequeue(System.nanoTime());
+                        frame.flip();
+                        int frameBytes = frame.remaining();
+                        transport.write(frame);
+                        long now = System.nanoTime();
+                        sendMetrics.onFlush(now, frameBytes, frameCommands);
+                        if (!wroteOnce) {
+                            linkStats.onFirstCommand(now);
+                            wroteOnce = true;
+                        }
+                        frame.clear();
+                        frameCommands = 0;
+                    }
+                    return;
+                } catch (IOException e) {
+                    closeTransport();
+                    // The frame which failed is dropped, the resync sends the current state.
+                    sendMetrics.onDropped(frameCommands);
+                    frameCommands = 0;
+                    frame.clear();
+                    ReconnectPolicy policy = reconnectPolicy;
+                    // A server which was never reached is reported instead of retried.
+                    if (policy == null || !connectedOnce || state.get() == State.DRAINING
+                            || !policy.shouldRetry(attempt)) {
+                        throw e;
+                    }
+                    if (attempt > 0) {
+                        linkStats.onAttemptFailed();
+                    }
+                    linkStats.onDisconnected(System.nanoTime());
+                    if (state.compareAndSet(State.CONNECTED, State.RECONNECTING)
+                            || state.compareAndSet(State.CONNECTING, State.RECONNECTING)) {
+                        dispatchState(State.RECONNECTING);
+                    }
+                    if (!waitBeforeReconnect(policy.getDelay(attempt++, random))) {
+                        return; // Disconnected during the outage.
+                    }
+                }
+            }
+        } catch (IOException e) {
+            dispatchException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dispatchException(e);
+        } finally {
+            closeTransport();
+            // Commands put after a failure are never sent.
+            commandQueue.close();
+            state.set(State.CLOSED);
+            dispatchState(State.CLOSED);
+            shutdownExecutor();
+        }
+    }
+
+    /**
+     * Wait given delay before a reconnect attempt, or until the engine is disconnected.
+     * @param delay long - the delay in milliseconds.
+     * @return boolean - true if should reconnect, false if disconnected while waiting.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private boolean waitBeforeReconnect(long delay) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + delay;
+        synchronized (reconnectLock) {
+            long left = delay;
+            while (left > 0 && state.get() != State.DRAINING) {
+                reconnectLock.wait(left);
+                left = deadline - System.currentTimeMillis();
+            }
+        }
+        return state.get() != State.DRAINING;
+    }
+
+    /**
+     * Start receiving telemetry from the just connected transport, if a parser was set.
+     * The previous connection's receiver was joined when its transport was closed. If it didn't
+     * end in time, it may still be reading, so the new receiver gets a buffer of its own (the
+     * parser is only fed while holding it, see TelemetryReceiver).
+     */
+    private void startReceiver() {
+        TelemetryParser parser = telemetryParser;
+        if (parser == null) {
+            return;
+        }
+        if (receiveBuffer == null || (receiverThread != null && receiverThread.isAlive())) {
+            receiveBuffer = ByteBuffer.allocate(TelemetryReceiver.BUFFER_SIZE);
+        }
+        receiver = new TelemetryReceiver(transport, parser, receiveBuffer);
+        receiverThread = new Thread(receiver, "TelemetryReceiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    /**
+     * Stop the current receiver, close the transport (which ends the receiver's blocked read) and
+     * wait up to RECEIVER_JOIN_TIMEOUT for the receiver's thread to end, so it's done with the
+     * parser and the buffer before the next connection's receiver starts.
+     */
+    private void closeTransport() {
+        if (receiver != null) {
+            receiver.stop();
+            receiver = null;
+        }
+        try {
+            transport.close();
+        } catch (IOException e) {
+            dispatchException(e);
+        }
+        if (receiverThread != null) {
+            try {
+                receiverThread.join(RECEIVER_JOIN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void shutdownExecutor() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private void dispatchState(final State newState) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Listener current = listener;
+                if (current != null) {
+                    current.onStateChanged(newState);
+                }
+            }
+        });
+    }
+
+    private void dispatchException(final Exception e) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Listener current = listener;
+                if (current != null) {
+                    current.onException(e);
+                }
+            }
+        });
+    }
+}
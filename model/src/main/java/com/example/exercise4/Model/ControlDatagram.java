@@ -0,0 +1,66 @@
+package com.example.exercise4.Model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The fixed layout of the control datagrams sent in UDP mode, matching the binary FlightGear
+ * generic protocol shipped in the app's assets/protocol/exercise4_controls.xml: a 32 bit sequence
+ * number, then a 32 bit float for each axis, in order, all in network byte order.
+ * Every datagram carries the whole control state, so a lost or late one is simply replaced by the
+ * next. Adding an axis means adding its path here and a chunk to the protocol file.
+ */
+public class ControlDatagram {
+
+    public static final int SEQUENCE_SIZE = 4;
+    public static final int AXIS_SIZE = 4;
+
+    private final String[] axes;
+
+    /**
+     * ControlDatagram's constructor.
+     * @param axes String[] - the property path of each axis, in the order they are sent.
+     */
+    public ControlDatagram(String... axes) {
+        this.axes = axes.clone();
+    }
+
+    /**
+     * @return int - the size of every datagram, in bytes.
+     */
+    public int size() {
+        return SEQUENCE_SIZE + AXIS_SIZE * axes.length;
+    }
+
+    /**
+     * @return int - the number of axes.
+     */
+    public int getAxisCount() {
+        return axes.length;
+    }
+
+    /**
+     * @param path String - a property path.
+     * @return int - the index of the axis of given path, or -1 if it isn't part of the layout.
+     */
+    public int indexOf(String path) {
+        for (int i = 0; i < axes.length; i++) {
+            if (axes[i].equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Write a datagram with given sequence number and axis values into given buffer.
+     * @param dst ByteBuffer - the buffer, with at least size() bytes remaining. Must be big endian.
+     * @param sequence int - the datagram's sequence number.
+     * @param values double[] - the value of each axis, in order.
+     */
+    public void encode(ByteBuffer dst, int sequence, double[] values) {
+        dst.putInt(sequence);
+        for (int i = 0; i < axes.length; i++) {
+            dst.putFloat((float) values[i]);
+        }
+    }
+}
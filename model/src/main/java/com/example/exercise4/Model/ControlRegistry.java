@@ -0,0 +1,114 @@
+package com.example.exercise4.Model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The property paths a FlightGearClient sets, each registered once as a Control holding its
+ * encoded "set &lt;path&gt; " prefix and a small id. Setting a registered control is then a field
+ * read plus the numeric encoding - no String is built and no map is looked up.
+ * Registering is thread safe, and registering a path twice returns the same Control.
+ */
+public class ControlRegistry {
+
+    /**
+     * A registered property path.
+     */
+    public static final class Control {
+
+        private final int id;
+        private final String path;
+        private final byte[] prefix;
+
+        private Control(int id, String path) {
+            this.id = id;
+            this.path = path;
+            this.prefix = CommandEncoder.prefix(path);
+        }
+
+        /**
+         * @return int - the control's id, its index in the order controls were registered.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return String - the property path.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return byte[] - the encoded "set &lt;path&gt; " prefix. Must not be modified.
+         */
+        byte[] getPrefix() {
+            return prefix;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Control> byPath = new ConcurrentHashMap<>();
+    // Copied on every registration, so reading by id needs no lock.
+    private volatile Control[] byId = new Control[0];
+
+    /**
+     * Register given property path, encoding its prefix, unless it was registered already.
+     * @param path String - the property path, e.g. FlightGearClient.RUDDER.
+     * @return Control - the path's control.
+     */
+    public Control register(String path) {
+        Control control = byPath.get(path);
+        if (control != null) {
+            return control;
+        }
+        synchronized (this) {
+            control = byPath.get(path);
+            if (control == null) {
+                Control[] grown = new Control[byId.length + 1];
+                System.arraycopy(byId, 0, grown, 0, byId.length);
+                control = new Control(byId.length, path);
+                grown[control.id] = control;
+                byPath.put(path, control);
+                byId = grown;
+            }
+            return control;
+        }
+    }
+
+    /**
+     * @param path String - a property path.
+     * @return Control - the path's control, or null if it wasn't registered.
+     */
+    public Control get(String path) {
+        return byPath.get(path);
+    }
+
+    /**
+     * @param id int - a control's id (0 - size() - 1).
+     * @return Control - the control of given id.
+     */
+    public Control get(int id) {
+        return byId[id];
+    }
+
+    /**
+     * @param control Control - a control.
+     * @return boolean - whether given control was registered by this registry.
+     */
+    public boolean contains(Control control) {
+        Control[] controls = byId;
+        return control.id < controls.length && controls[control.id] == control;
+    }
+
+    /**
+     * @return int - the number of controls registered.
+     */
+    public int size() {
+        return byId.length;
+    }
+}
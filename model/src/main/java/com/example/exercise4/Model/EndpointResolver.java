@@ -0,0 +1,209 @@
+package com.example.exercise4.Model;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the servers' host names on a background thread, so a slow DNS lookup never blocks the
+ * UI thread. Resolved hosts are cached for a TTL, so connecting to the same servers again (e.g.
+ * right after going back to the login screen) doesn't look them up again.
+ * The resolved InetSocketAddresses are meant to be handed to the transports as is (see
+ * SocketTransport, NioTransport, UdpTransport and FanOutTransport), so connecting doesn't look
+ * the host up a second time.
+ * Thread safe.
+ */
+public class EndpointResolver {
+
+    public static final long DEFAULT_TTL = 60000;
+    // The number of hosts cached, the least recently used is forgotten first.
+    public static final int CACHE_SIZE = 16;
+    // Port 0 only means "any port" when binding, it can't be connected to.
+    public static final int MIN_PORT = 1;
+    public static final int MAX_PORT = 65535;
+
+    /**
+     * Receives the result of resolving several endpoints. Called on the resolver's thread.
+     */
+    public interface Callback {
+        /**
+         * @param addresses InetSocketAddress[] - the resolved address of each endpoint, in the
+         *                  order they were given.
+         */
+        void onResolved(InetSocketAddress[] addresses);
+
+        /**
+         * @param host String - the first host which couldn't be resolved.
+         * @param e Exception - why: an UnknownHostException if the host wasn't found, or an
+         *          IllegalArgumentException if its endpoint was invalid (e.g. its port).
+         */
+        void onFailed(String host, Exception e);
+    }
+
+    private static class Entry {
+        final InetAddress address;
+        final long expiry;
+
+        Entry(InetAddress address, long expiry) {
+            this.address = address;
+            this.expiry = expiry;
+        }
+    }
+
+    /**
+     * The cached hosts, in access order, forgetting the least recently used past CACHE_SIZE.
+     */
+    private static class LruCache extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        LruCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    }
+
+    private final long ttl;
+    private final ExecutorService executor;
+    // Guarded by itself.
+    private final Map<String, Entry> cache = new LruCache();
+    private long lookupCount = 0;
+
+    /**
+     * EndpointResolver's constructor, with DEFAULT_TTL.
+     */
+    public EndpointResolver() {
+        this(DEFAULT_TTL);
+    }
+
+    /**
+     * EndpointResolver's constructor. Resolves on a daemon thread of its own.
+     * @param ttl long - how long a resolved host is cached, in milliseconds (0 for never).
+     */
+    public EndpointResolver(long ttl) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("The TTL can't be negative.");
+        }
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "EndpointResolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Resolve given endpoints on the resolver's thread, and report the result to given callback,
+     * which is always called exactly once.
+     * @param hosts String[] - the ip address or host name of each endpoint.
+     * @param ports int[] - the port number of each endpoint, in the same order.
+     * @param callback Callback - receives the result.
+     */
+    public void resolve(final String[] hosts, final int[] ports, final Callback callback) {
+        if (hosts.length != ports.length) {
+            throw new IllegalArgumentException("Each host must be given a single port.");
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                InetSocketAddress[] addresses = new InetSocketAddress[hosts.length];
+                for (int i = 0; i < hosts.length; i++) {
+                    try {
+                        addresses[i] = resolve(hosts[i], ports[i]);
+                    } catch (UnknownHostException | RuntimeException e) {
+                        callback.onFailed(hosts[i], e);
+                        return;
+                    }
+                }
+                callback.onResolved(addresses);
+            }
+        });
+    }
+
+    /**
+     * Resolve given endpoint on the calling thread, from the cache if it's fresh.
+     * @param host String - the ip address or host name.
+     * @param port int - the port number.
+     * @return InetSocketAddress - the resolved address.
+     * @throws UnknownHostException if the host couldn't be resolved.
+     * @throws IllegalArgumentException if the port is out of range (1 - 65535).
+     */
+    public InetSocketAddress resolve(String host, int port) throws UnknownHostException {
+        if (port < MIN_PORT || port > MAX_PORT) {
+            throw new IllegalArgumentException("Port " + port + " is out of range.");
+        }
+        String key = host.toLowerCase();
+        long now = System.nanoTime();
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null && now - entry.expiry < 0) {
+                return new InetSocketAddress(entry.address, port);
+            }
+        }
+        InetAddress address = lookup(host);
+        synchronized (cache) {
+            lookupCount++;
+            if (ttl > 0) {
+                cache.put(key, new Entry(address, now + ttl));
+            }
+        }
+        return new InetSocketAddress(address, port);
+    }
+
+    /**
+     * Look given host up, bypassing the cache. Blocks while the DNS is queried.
+     * @param host String - the ip address or host name.
+     * @return InetAddress - the host's address.
+     * @throws UnknownHostException if the host couldn't be resolved.
+     */
+    protected InetAddress lookup(String host) throws UnknownHostException {
+        return InetAddress.getByName(host);
+    }
+
+    /**
+     * Forget the cached address of given host, e.g. after failing to connect to it.
+     * @param host String - the ip address or host name.
+     */
+    public void invalidate(String host) {
+        synchronized (cache) {
+            cache.remove(host.toLowerCase());
+        }
+    }
+
+    /**
+     * @return long - the number of hosts looked up, not found in the cache.
+     */
+    public long getLookupCount() {
+        synchronized (cache) {
+            return lookupCount;
+        }
+    }
+
+    /**
+     * Stop the resolver's thread. Endpoints still waiting to be resolved are dropped.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param address InetSocketAddress - a resolved address.
+     * @return String - the address' ip, without looking its host name up.
+     */
+    static String hostOf(InetSocketAddress address) {
+        InetAddress resolved = address.getAddress();
+        return resolved != null ? resolved.getHostAddress() : address.getHostName();
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Transport writing every frame to several servers (e.g. the simulators of a multi-screen
+ * rig), so a single engine thread and a single encoded frame serve all of them.
+ * Each endpoint is a non-blocking NioTransport written with writeAvailable, so a slow endpoint
+ * never holds back the others: what its socket doesn't take is kept in its own backlog and sent
+ * with the next frames. When even the backlog is full, frames are dropped for that endpoint only,
+ * and once it catches up the ResyncSource brings it back to the current state.
+ * An endpoint which fails is closed and reconnected in the background, by a single thread shared
+ * by all endpoints, as its ReconnectPolicy allows. The transport itself only fails (letting the
+ * engine reconnect everything) when no endpoint could be connected, or every endpoint gave up.
+ * Nothing is read back - telemetry isn't supported while fanning out.
+ */
+public class FanOutTransport implements Transport {
+
+    // The bytes an endpoint may fall behind by before frames are dropped for it.
+    public static final int DEFAULT_BACKLOG_SIZE = 2 * ConnectionEngine.FRAME_SIZE;
+
+    public enum Health {
+        // Connecting, or waiting to reconnect.
+        CONNECTING,
+        // Taking every frame as it's written.
+        HEALTHY,
+        // Connected, but its socket is full and frames wait in its backlog.
+        LAGGING,
+        // Gave up reconnecting.
+        FAILED
+    }
+
+    /**
+     * A single server the frames are fanned out to, with its health and counters. The counters
+     * may be read from any thread.
+     */
+    public static class Endpoint {
+
+        private final String host;
+        private final int port;
+        private final NioTransport transport;
+        // Used by the engine's thread while connected, and by the reconnecting thread otherwise.
+        private final ByteBuffer backlog;
+        private final CoalescingCommandQueue resyncQueue = new CoalescingCommandQueue();
+        private volatile boolean needsResync = false;
+        private int attempt = 0;
+
+        private volatile Health health = Health.CONNECTING;
+        private volatile long bytesSent = 0;
+        private volatile long framesSent = 0;
+        private volatile long framesDropped = 0;
+        private volatile long reconnectCount = 0;
+        private volatile int backlogBytes = 0;
+
+        Endpoint(String host, int port, InetSocketAddress address, int backlogSize) {
+            this.host = host;
+            this.port = port;
+            this.transport = address != null ? new NioTransport(address)
+                    : new NioTransport(host, port);
+            this.backlog = ByteBuffer.allocate(backlogSize);
+        }
+
+        /**
+         * @return String - the endpoint's host.
+         */
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * @return int - the endpoint's port.
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * @return Health - the endpoint's current health.
+         */
+        public Health getHealth() {
+            return health;
+        }
+
+        /**
+         * @return long - the bytes written to the endpoint's socket so far.
+         */
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * @return long - the frames written or backlogged for the endpoint so far.
+         */
+        public long getFramesSent() {
+            return framesSent;
+        }
+
+        /**
+         * @return long - the frames dropped for the endpoint, because its backlog was full or it
+         *         was disconnected.
+         */
+        public long getFramesDropped() {
+            return framesDropped;
+        }
+
+        /**
+         * @return long - the times the endpoint was reconnected.
+         */
+        public long getReconnectCount() {
+            return reconnectCount;
+        }
+
+        /**
+         * @return int - the bytes waiting in the endpoint's backlog.
+         */
+        public int getBacklogBytes() {
+            return backlogBytes;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port + " " + health + " sent=" + framesSent
+                    + " dropped=" + framesDropped + " backlog=" + backlogBytes
+                    + " reconnects=" + reconnectCount;
+        }
+
+        /**
+         * Write what waits in the backlog, then the missed state if needed, then given frame (or
+         * as much as the socket takes, backlogging the rest). Called on the engine's thread.
+         * @param frame ByteBuffer - the frame, its position is advanced.
+         * @param source ConnectionEngine.ResyncSource - the source of the missed state, or null.
+         * @throws IOException if the endpoint's connection failed.
+         * @throws InterruptedException never - the resync queue isn't empty when drained.
+         */
+        void send(ByteBuffer frame, ConnectionEngine.ResyncSource source)
+                throws IOException, InterruptedException {
+            flushBacklog();
+            if (needsResync && backlog.position() == 0 && source != null) {
+                needsResync = false;
+                source.resync(resyncQueue);
+                if (resyncQueue.size() > 0) {
+                    resyncQueue.drainTo(backlog);
+                    resyncQueue.clear();
+                    flushBacklog();
+                }
+            }
+            int length = frame.remaining();
+            if (backlog.position() == 0) {
+                transport.writeAvailable(frame);
+                bytesSent += length - frame.remaining();
+                backlog.put(frame); // A frame always fits in the empty backlog.
+                framesSent++;
+            } else if (backlog.remaining() >= length) {
+                backlog.put(frame);
+                framesSent++;
+            } else {
+                framesDropped++;
+                needsResync = true;
+            }
+            backlogBytes = backlog.position();
+            health = backlogBytes > 0 ? Health.LAGGING : Health.HEALTHY;
+        }
+
+        private void flushBacklog() throws IOException {
+            if (backlog.position() > 0) {
+                backlog.flip();
+                int length = backlog.remaining();
+                transport.writeAvailable(backlog);
+                bytesSent += length - backlog.remaining();
+                backlog.compact();
+            }
+        }
+    }
+
+    private final Endpoint[] endpoints;
+    private final Random random = new Random();
+    private volatile ReconnectPolicy reconnectPolicy = new ReconnectPolicy();
+    private volatile ConnectionEngine.ResyncSource resyncSource;
+    private ScheduledExecutorService reconnector;
+
+    /**
+     * FanOutTransport's constructor, with DEFAULT_BACKLOG_SIZE. Hosts are only resolved when
+     * connecting.
+     * @param hosts String[] - the ip address or host name of each server.
+     * @param ports int[] - the port number of each server.
+     */
+    public FanOutTransport(String[] hosts, int[] ports) {
+        this(hosts, ports, DEFAULT_BACKLOG_SIZE);
+    }
+
+    /**
+     * FanOutTransport's constructor. Hosts are only resolved when connecting.
+     * @param hosts String[] - the ip address or host name of each server.
+     * @param ports int[] - the port number of each server.
+     * @param backlogSize int - the bytes an endpoint may fall behind by, at least FRAME_SIZE.
+     */
+    public FanOutTransport(String[] hosts, int[] ports, int backlogSize) {
+        if (hosts.length == 0 || hosts.length != ports.length) {
+            throw new IllegalArgumentException("Each host must be given a single port.");
+        }
+        checkBacklogSize(backlogSize);
+        endpoints = new Endpoint[hosts.length];
+        for (int i = 0; i < hosts.length; i++) {
+            endpoints[i] = new Endpoint(hosts[i], ports[i], null, backlogSize);
+        }
+    }
+
+    /**
+     * FanOutTransport's constructor, with DEFAULT_BACKLOG_SIZE, connecting to addresses resolved
+     * ahead of time (e.g. by an EndpointResolver), so connecting doesn't look the hosts up again.
+     * @param addresses InetSocketAddress[] - the resolved address of each server.
+     */
+    public FanOutTransport(InetSocketAddress[] addresses) {
+        if (addresses.length == 0) {
+            throw new IllegalArgumentException("At least a single server is needed.");
+        }
+        endpoints = new Endpoint[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            endpoints[i] = new Endpoint(EndpointResolver.hostOf(addresses[i]),
+                    addresses[i].getPort(), addresses[i], DEFAULT_BACKLOG_SIZE);
+        }
+    }
+
+    private static void checkBacklogSize(int backlogSize) {
+        if (backlogSize < ConnectionEngine.FRAME_SIZE) {
+            throw new IllegalArgumentException("The backlog must fit a whole frame.");
+        }
+    }
+
+    /**
+     * Set the policy every endpoint is reconnected by. Should be set before connecting.
+     * @param reconnectPolicy ReconnectPolicy - the policy.
+     */
+    public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
+    /**
+     * Set the source of the state sent to an endpoint which missed frames.
+     * @param resyncSource ConnectionEngine.ResyncSource - the source, e.g. the FlightGearClient.
+     */
+    public void setResyncSource(ConnectionEngine.ResyncSource resyncSource) {
+        this.resyncSource = resyncSource;
+    }
+
+    /**
+     * @return Endpoint[] - the endpoints, in the order given.
+     */
+    public Endpoint[] getEndpoints() {
+        return endpoints.clone();
+    }
+
+    /**
+     * Connect every endpoint, one after the other. Endpoints which fail are reconnected in the
+     * background.
+     * @throws IOException if no endpoint could be connected.
+     */
+    @Override
+    public synchronized void connect() throws IOException {
+        reconnector = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "FanOutTransport");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        IOException failure = null;
+        for (Endpoint endpoint : endpoints) {
+            endpoint.attempt = 0;
+            endpoint.backlog.clear();
+            endpoint.backlogBytes = 0;
+            try {
+                endpoint.transport.connect();
+                endpoint.health = Health.HEALTHY;
+            } catch (IOException e) {
+                failure = e;
+                fail(endpoint);
+            }
+        }
+        if (!isAnyConnected()) {
+            close();
+            throw failure;
+        }
+    }
+
+    /**
+     * Write given frame to every connected endpoint. Endpoints which aren't connected miss it,
+     * and are resynced once reconnected.
+     * @param frame ByteBuffer - the frame, its position is advanced to its limit.
+     * @throws IOException if every endpoint gave up reconnecting.
+     */
+    @Override
+    public void write(ByteBuffer frame) throws IOException {
+        int start = frame.position();
+        int failed = 0;
+        ConnectionEngine.ResyncSource source = resyncSource;
+        for (Endpoint endpoint : endpoints) {
+            Health health = endpoint.health;
+            if (health == Health.HEALTHY || health == Health.LAGGING) {
+                frame.position(start);
+                try {
+                    endpoint.send(frame, source);
+                } catch (IOException e) {
+                    fail(endpoint);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (health == Health.FAILED) {
+                failed++;
+            } else {
+                endpoint.framesDropped++;
+            }
+        }
+        frame.position(frame.limit());
+        if (failed == endpoints.length) {
+            throw new IOException("Every endpoint failed.");
+        }
+    }
+
+    /**
+     * Close a failed endpoint, and schedule its reconnection if its policy allows.
+     * @param endpoint Endpoint - the endpoint.
+     */
+    private synchronized void fail(final Endpoint endpoint) {
+        endpoint.health = Health.CONNECTING;
+        try {
+            endpoint.transport.close();
+        } catch (IOException e) {
+            // Being replaced anyway.
+        }
+        ReconnectPolicy policy = reconnectPolicy;
+        if (reconnector == null || reconnector.isShutdown() || policy == null
+                || !policy.shouldRetry(endpoint.attempt)) {
+            endpoint.health = Health.FAILED;
+            return;
+        }
+        reconnector.schedule(new Runnable() {
+            @Override
+            public void run() {
+                reconnect(endpoint);
+            }
+        }, policy.getDelay(endpoint.attempt++, random), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reconnect given endpoint. Runs on the reconnecting thread, while the engine's thread leaves
+     * the endpoint alone.
+     * @param endpoint Endpoint - the endpoint.
+     */
+    private void reconnect(Endpoint endpoint) {
+        try {
+            endpoint.transport.connect();
+        } catch (IOException e) {
+            fail(endpoint);
+            return;
+        }
+        synchronized (this) {
+            if (reconnector.isShutdown()) { // Closed while connecting.
+                try {
+                    endpoint.transport.close();
+                } catch (IOException e) {
+                    // Closed anyway.
+                }
+                return;
+            }
+            endpoint.backlog.clear();
+            endpoint.backlogBytes = 0;
+            endpoint.attempt = 0;
+            endpoint.reconnectCount++;
+            endpoint.needsResync = true;
+            endpoint.health = Health.HEALTHY;
+        }
+    }
+
+    private boolean isAnyConnected() {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.health == Health.HEALTHY || endpoint.health == Health.LAGGING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Nothing is read while fanning out.
+     * @param dst ByteBuffer - NOT USED
+     * @return int - always -1.
+     */
+    @Override
+    public int read(ByteBuffer dst) {
+        return -1;
+    }
+
+    /**
+     * @return boolean - true if any endpoint is connected and keeping up.
+     */
+    @Override
+    public boolean isWritable() {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.health == Health.HEALTHY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Close every endpoint and stop reconnecting them.
+     */
+    @Override
+    public synchronized void close() {
+        if (reconnector != null) {
+            reconnector.shutdownNow();
+        }
+        for (Endpoint endpoint : endpoints) {
+            try {
+                endpoint.transport.close();
+            } catch (IOException e) {
+                // Closing the others anyway.
+            }
+            if (endpoint.health != Health.FAILED) {
+                endpoint.health = Health.CONNECTING;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.exercise4.Model;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A CommandQueue which keeps every command given to it, in order, on an unbounded
+ * LinkedBlockingQueue. Keys are ignored.
+ * Every command is copied into a new byte array, so unlike CoalescingCommandQueue this queue
+ * allocates on each put.
+ */
+public class FifoCommandQueue implements CommandQueue {
+
+    // Disconnection flag - compared by reference, so a real empty command won't be mistaken for it.
+    private static final byte[] CLOSE_FLAG = new byte[0];
+
+    private final BlockingQueue<byte[]> commandQueue = new LinkedBlockingQueue<>();
+    private volatile boolean closed = false;
+
+    @Override
+    public void put(String key, ByteBuffer command) {
+        if (command.remaining() > MAX_COMMAND_LENGTH) {
+            throw new IllegalArgumentException("Command is longer than "
+                    + MAX_COMMAND_LENGTH + " bytes.");
+        }
+        if (!closed) {
+            byte[] copy = new byte[command.remaining()];
+            command.duplicate().get(copy);
+            commandQueue.add(copy);
+        }
+    }
+
+    /**
+     * Add all given commands while holding the queue's lock, so a drainTo call which already
+     * started taking them waits for the rest.
+     * @param keys String[] - NOT USED
+     * @param commands ByteBuffer[] - the encoded commands.
+     * @param count int - the number of commands to add.
+     */
+    @Override
+    public synchronized void putAll(String[] keys, ByteBuffer[] commands, int count) {
+        for (int i = 0; i < count; i++) {
+            put(null, commands[i]);
+        }
+    }
+
+    @Override
+    public int drainTo(ByteBuffer frame) throws InterruptedException {
+        byte[] command = commandQueue.take();
+        if (command == CLOSE_FLAG) {
+            // Leave the flag for any other waiting thread.
+            commandQueue.add(CLOSE_FLAG);
+            return -1;
+        }
+        frame.put(command);
+        int count = 1;
+        synchronized (this) {
+            while ((command = commandQueue.peek()) != null
+                    && command != CLOSE_FLAG && command.length <= frame.remaining()) {
+                frame.put(commandQueue.poll());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        // Not counting the disconnection flag.
+        return closed ? Math.max(0, commandQueue.size() - 1) : commandQueue.size();
+    }
+
+    @Override
+    public void clear() {
+        commandQueue.clear();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        commandQueue.add(CLOSE_FLAG);
+    }
+}
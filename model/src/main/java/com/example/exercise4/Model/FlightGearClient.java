@@ -0,0 +1,528 @@
+package com.example.exercise4.Model;
+
+import com.example.exercise4.Model.ControlRegistry.Control;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class FlightGearClient extends TCPClient implements ConnectionEngine.ResyncSource {
+
+    // Constants: the property paths of the controls, also used as the keys of the commands.
+    public static final String AILERON = "controls/flight/aileron";
+    public static final String ELEVATOR = "controls/flight/elevator";
+    public static final String RUDDER = "controls/flight/rudder";
+    public static final String THROTTLE = "controls/engines/engine/throttle";
+    public static final String FLAPS = "controls/flight/flaps";
+    public static final String ELEVATOR_TRIM = "controls/flight/elevator-trim";
+
+    // The layout of the datagrams sent in UDP mode, see the app's exercise4_controls.xml.
+    public static final ControlDatagram CONTROL_DATAGRAM =
+            new ControlDatagram(AILERON, ELEVATOR, RUDDER, THROTTLE);
+    // The key of the datagrams on the queue - only the newest one is ever sent.
+    private static final String DATAGRAM_KEY = "datagram";
+
+    // Every property set, registered once with its encoded "set <path> " prefix.
+    private final ControlRegistry registry = new ControlRegistry();
+    private final Control aileron = registry.register(AILERON);
+    private final Control elevator = registry.register(ELEVATOR);
+
+    // Reused for encoding every command - guarded by encodeLock.
+    private final Object encodeLock = new Object();
+    private CommandEncoder encoder = new CommandEncoder();
+    private ByteBuffer[] scratch = new ByteBuffer[0];
+    private String[] keys = new String[2];
+    private Control[] pathControls = new Control[2];
+    private final Control[] controlPair = {aileron, elevator};
+    private final double[] controlValues = new double[2];
+    private final Control[] singleControl = new Control[1];
+    private final double[] singleValue = new double[1];
+    // The last value set for every control by id (NaN if never set), re-sent after
+    // reconnecting - guarded by encodeLock.
+    private double[] lastValues = new double[0];
+
+    // The "get <path>" requests of the telemetry properties, encoded once - guarded by encodeLock.
+    private TelemetrySnapshot telemetry;
+    private String[] telemetryKeys = new String[0];
+    private ByteBuffer[] telemetryRequests = new ByteBuffer[0];
+
+    // UDP mode only: the layout, the current value of each of its axes and the next sequence
+    // number - guarded by encodeLock.
+    private final ControlDatagram datagram;
+    private final double[] axisValues;
+    private int sequence = 0;
+
+    // Records every value set, if recording - guarded by encodeLock.
+    private SessionRecorder recorder;
+
+    /**
+     * FlightGearClient's constructor. Calls to TCPClient constructor, every command is sent, in
+     * order, through a RingCommandQueue. Every command is put while holding the client's lock
+     * (the inherited writes included), so there's a single producer at a time. A full ring drops
+     * its oldest commands rather than making the producer wait while holding the lock - the
+     * resync after reconnecting needs it, and re-sends the last value of every property anyway.
+     * @param ipString String - ip
+     * @param portString String - port
+     */
+    public FlightGearClient(String ipString, String portString) {
+        super(ipString, portString, ringQueue());
+        this.datagram = null;
+        this.axisValues = null;
+        setResyncSource(this);
+    }
+
+    /**
+     * FlightGearClient's constructor. Calls to TCPClient constructor.
+     * When coalescing, only the newest value of each property is sent, so commands never pile up
+     * behind a slow connection. Otherwise every command is sent, in order, as described on the
+     * first constructor.
+     * @param ipString String - ip
+     * @param portString String - port
+     * @param coalescing boolean - whether to use a CoalescingCommandQueue or a RingCommandQueue.
+     */
+    public FlightGearClient(String ipString, String portString, boolean coalescing) {
+        super(ipString, portString, queue(coalescing));
+        this.datagram = null;
+        this.axisValues = null;
+        setResyncSource(this);
+    }
+
+    /**
+     * FlightGearClient's constructor. Calls to TCPClient constructor, sending over given transport
+     * (for example a NioTransport).
+     * @param transport Transport - the connection to the server, not connected yet.
+     * @param coalescing boolean - whether to use a CoalescingCommandQueue or a RingCommandQueue.
+     */
+    public FlightGearClient(Transport transport, boolean coalescing) {
+        super(transport, queue(coalescing));
+        this.datagram = null;
+        this.axisValues = null;
+        setResyncSource(this);
+    }
+
+    /**
+     * FlightGearClient's constructor. Connects with a blocking SocketTransport to an address
+     * resolved ahead of time (e.g. by an EndpointResolver), so connecting doesn't look the host
+     * up again.
+     * @param address InetSocketAddress - the server's resolved address.
+     * @param coalescing boolean - whether to use a CoalescingCommandQueue or a RingCommandQueue.
+     */
+    public FlightGearClient(InetSocketAddress address, boolean coalescing) {
+        this(new SocketTransport(address, SocketTransport.DEFAULT_CONNECT_TIMEOUT), coalescing);
+    }
+
+    /**
+     * FlightGearClient's constructor for UDP mode, sending to an address resolved ahead of time.
+     * See the String constructor for UDP mode.
+     * @param address InetSocketAddress - the resolved address of FlightGear's generic protocol
+     *                input.
+     * @param datagram ControlDatagram - the layout, e.g. CONTROL_DATAGRAM.
+     */
+    public FlightGearClient(InetSocketAddress address, ControlDatagram datagram) {
+        super(new UdpTransport(address, datagram.size()), new CoalescingCommandQueue());
+        this.datagram = datagram;
+        this.axisValues = new double[datagram.getAxisCount()];
+        setResyncSource(this);
+    }
+
+    /**
+     * FlightGearClient's constructor for UDP mode. Instead of "set" commands over TCP, every update
+     * sends a single datagram of given layout, holding all of the axes and a sequence number.
+     * Only the newest datagram is kept on the queue, and a lost one is never resent - the next one
+     * carries the whole state anyway. Use the TCP constructors for the reliable mode.
+     * @param ipString String - ip
+     * @param portString String - port of FlightGear's generic protocol input.
+     * @param datagram ControlDatagram - the layout, e.g. CONTROL_DATAGRAM.
+     */
+    public FlightGearClient(String ipString, String portString, ControlDatagram datagram) {
+        super(new UdpTransport(ipString, Integer.parseInt(portString), datagram.size()),
+                new CoalescingCommandQueue());
+        this.datagram = datagram;
+        this.axisValues = new double[datagram.getAxisCount()];
+        setResyncSource(this);
+    }
+
+    /**
+     * @return boolean - whether the client is in UDP mode, sending datagrams instead of "set"
+     *         commands (and reading no responses back).
+     */
+    public boolean isUdp() {
+        return datagram != null;
+    }
+
+    private static CommandQueue queue(boolean coalescing) {
+        return coalescing ? new CoalescingCommandQueue() : ringQueue();
+    }
+
+    private static CommandQueue ringQueue() {
+        return new RingCommandQueue(RingCommandQueue.DEFAULT_CAPACITY,
+                RingCommandQueue.WaitStrategy.SPIN_THEN_PARK,
+                RingCommandQueue.Overflow.DROP_OLDEST);
+    }
+
+    /**
+     * Send given input to the server, while holding the client's lock like every other put.
+     * @param key String - what the input refers to.
+     * @param input String - given input.
+     */
+    @Override
+    public void write(String key, String input) {
+        synchronized (encodeLock) {
+            super.write(key, input);
+        }
+    }
+
+    /**
+     * Send the remaining bytes of given buffer to the server, while holding the client's lock
+     * like every other put.
+     * @param key String - what the command refers to.
+     * @param command ByteBuffer - the encoded command.
+     */
+    @Override
+    public void write(String key, ByteBuffer command) {
+        synchronized (encodeLock) {
+            super.write(key, command);
+        }
+    }
+
+    /**
+     * Send the first count given commands to the server together, while holding the client's lock
+     * like every other put.
+     * @param keys String[] - what each command refers to.
+     * @param commands ByteBuffer[] - the encoded commands.
+     * @param count int - the number of commands to send.
+     */
+    @Override
+    public void writeAll(String[] keys, ByteBuffer[] commands, int count) {
+        synchronized (encodeLock) {
+            super.writeAll(keys, commands, count);
+        }
+    }
+
+    /**
+     * Set the number of digits sent after the decimal point of every value.
+     * @param precision int - the precision (0 - CommandEncoder.MAX_PRECISION).
+     */
+    public void setPrecision(int precision) {
+        synchronized (encodeLock) {
+            encoder = new CommandEncoder(precision);
+        }
+    }
+
+    /**
+     * Record every value set from now on with given recorder, or stop recording.
+     * @param recorder SessionRecorder - the recorder, or null to stop. Isn't closed when stopping.
+     */
+    public void setRecorder(SessionRecorder recorder) {
+        synchronized (encodeLock) {
+            this.recorder = recorder;
+        }
+    }
+
+    /**
+     * Register given property path, so it can be set without any lookup. Registering a path
+     * twice returns the same control. AILERON and ELEVATOR are registered by the client itself.
+     * @param path String - the property path, e.g. RUDDER.
+     * @return Control - the path's control, which can only be set on this client.
+     */
+    public Control register(String path) {
+        return registry.register(path);
+    }
+
+    /**
+     * @return ControlRegistry - the controls registered so far.
+     */
+    public ControlRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Creates a set aileron command with given value, and write it to the server.
+     * @param value double - the aileron's value.
+     */
+    public void setAileron(double value) {
+        set(aileron, value);
+    }
+
+    /**
+     * Creates a set elevator command with given value, and write it to the server.
+     * @param value double - the elevator's value.
+     */
+    public void setElevator(double value) {
+        set(elevator, value);
+    }
+
+    /**
+     * Creates set aileron and set elevator commands with given values, and write them to the server
+     * together, so both are applied on the same simulator frame.
+     * @param aileron double - the aileron's value.
+     * @param elevator double - the elevator's value.
+     */
+    public void setControls(double aileron, double elevator) {
+        synchronized (encodeLock) {
+            controlValues[0] = aileron;
+            controlValues[1] = elevator;
+            send(controlPair, controlValues, 2);
+        }
+    }
+
+    /**
+     * Creates a set command for given control with given value, and write it to the server with
+     * the control's path as its key.
+     * @param control Control - a control registered on this client.
+     * @param value double - the property's value.
+     */
+    public void set(Control control, double value) {
+        synchronized (encodeLock) {
+            singleControl[0] = control;
+            singleValue[0] = value;
+            send(singleControl, singleValue, 1);
+        }
+    }
+
+    /**
+     * Creates a set command for each given control with its given value, and write all of them to
+     * the server at once, in a single frame (in UDP mode, a single datagram).
+     * @param controls Control[] - controls registered on this client.
+     * @param values double[] - the value of each control.
+     * @param count int - the number of controls, from the start of the arrays.
+     * @throws IllegalArgumentException in UDP mode, if a control isn't one of the datagram's axes.
+     */
+    public void set(Control[] controls, double[] values, int count) {
+        synchronized (encodeLock) {
+            send(controls, values, count);
+        }
+    }
+
+    /**
+     * Creates a set command for each given property path with its given value, and write all of
+     * them to the server at once, in a single frame (in UDP mode, a single datagram). Paths are
+     * registered on first use - registering them up front saves the lookups.
+     * @param paths String[] - the property paths.
+     * @param values double[] - the value of each property.
+     * @throws IllegalArgumentException in UDP mode, if a path isn't one of the datagram's axes.
+     */
+    public void set(String[] paths, double[] values) {
+        if (paths.length != values.length) {
+            throw new IllegalArgumentException("Each path must be given a single value.");
+        }
+        synchronized (encodeLock) {
+            if (paths.length > pathControls.length) {
+                pathControls = new Control[paths.length];
+            }
+            for (int i = 0; i < paths.length; i++) {
+                pathControls[i] = registry.register(paths[i]);
+            }
+            send(pathControls, values, paths.length);
+        }
+    }
+
+    /**
+     * Encode a set command for each given control with its given value, and write them to the
+     * server, each keyed by its control's path. Must be called while holding encodeLock.
+     * Every control (and over TCP, every value) is checked first, so a rejected call neither
+     * records nor changes anything.
+     * @param controls Control[] - controls registered on this client.
+     * @param values double[] - the value of each control.
+     * @param count int - the number of controls, from the start of the arrays.
+     * @throws IllegalArgumentException if a control isn't registered here, or in UDP mode, isn't
+     *         one of the datagram's axes, or over TCP, a value can't be encoded.
+     */
+    private void send(Control[] controls, double[] values, int count) {
+        if (count > keys.length) {
+            keys = new String[count];
+        }
+        for (int i = 0; i < count; i++) {
+            if (!registry.contains(controls[i])) {
+                throw new IllegalArgumentException(controls[i] + " wasn't registered here.");
+            }
+            keys[i] = controls[i].getPath();
+            if (datagram != null && datagram.indexOf(keys[i]) < 0) {
+                throw new IllegalArgumentException(
+                        keys[i] + " isn't part of the control datagram.");
+            }
+        }
+        if (datagram != null) {
+            record(count, values);
+            for (int i = 0; i < count; i++) {
+                axisValues[datagram.indexOf(keys[i])] = values[i];
+            }
+            sendDatagram();
+            return;
+        }
+        // Encoded first, since the encoder rejects values it can't send (e.g. NaN).
+        for (int i = 0; i < count; i++) {
+            byte[] prefix = controls[i].getPrefix();
+            encoder.encode(scratch(i, prefix), prefix, values[i]);
+        }
+        record(count, values);
+        for (int i = 0; i < count; i++) {
+            remember(controls[i], values[i]);
+        }
+        flipScratch(count);
+        if (count == 1) {
+            super.write(keys[0], scratch[0]);
+        } else {
+            super.writeAll(keys, scratch, count);
+        }
+    }
+
+    /**
+     * Read the responses of the server into a new snapshot of given properties. Their values are
+     * only sent when asked for, by calling requestTelemetry. Must be called before connecting.
+     * Not used in UDP mode - receive the generic protocol's output with an UdpTelemetryReceiver.
+     * @param paths String[] - the property paths, e.g. "/position/altitude-ft".
+     * @return TelemetrySnapshot - the snapshot, which can be polled or subscribed to.
+     */
+    public TelemetrySnapshot enableTelemetry(String... paths) {
+        synchronized (encodeLock) {
+            telemetry = new TelemetrySnapshot(paths);
+            telemetryKeys = new String[paths.length];
+            telemetryRequests = new ByteBuffer[paths.length];
+            for (int i = 0; i < paths.length; i++) {
+                telemetryKeys[i] = "get " + paths[i];
+                telemetryRequests[i] = ByteBuffer.wrap(CommandEncoder.request(paths[i]));
+            }
+            setTelemetryParser(new TelemetryParser(telemetry, TelemetryParser.Format.PROPERTY));
+            return telemetry;
+        }
+    }
+
+    /**
+     * @return TelemetrySnapshot - the snapshot created by enableTelemetry, or null.
+     */
+    public TelemetrySnapshot getTelemetry() {
+        synchronized (encodeLock) {
+            return telemetry;
+        }
+    }
+
+    /**
+     * Ask the server for the current value of every telemetry property, with a single frame.
+     * A request still waiting to be sent isn't queued twice when coalescing.
+     * Does nothing in UDP mode, where the telemetry is sent by a generic protocol instead.
+     */
+    public void requestTelemetry() {
+        synchronized (encodeLock) {
+            if (datagram != null) {
+                return;
+            }
+            // The queue copies the requests without moving their positions, so they're reused.
+            super.writeAll(telemetryKeys, telemetryRequests, telemetryRequests.length);
+        }
+    }
+
+    /**
+     * Re-send the last value set for every property, so the simulator catches up with commands
+     * lost while the connection was down. Called by the engine after reconnecting.
+     * @param queue CommandQueue - the client's queue.
+     */
+    @Override
+    public void resync(CommandQueue queue) {
+        synchronized (encodeLock) {
+            if (datagram != null) {
+                queue.put(DATAGRAM_KEY, encodeDatagram());
+                return;
+            }
+            for (int id = 0; id < lastValues.length; id++) {
+                if (Double.isNaN(lastValues[id])) {
+                    continue;
+                }
+                Control control = registry.get(id);
+                ByteBuffer command = scratch(0, control.getPrefix());
+                encoder.encode(command, control.getPrefix(), lastValues[id]);
+                command.flip();
+                queue.put(control.getPath(), command);
+            }
+        }
+    }
+
+    /**
+     * Record the first count keys with given values, if recording. Must be called while holding
+     * encodeLock.
+     * @param count int - the number of values.
+     * @param values double[] - the value of each key.
+     */
+    private void record(int count, double[] values) {
+        if (recorder != null) {
+            recorder.record(System.nanoTime(), keys, values, count);
+        }
+    }
+
+    /**
+     * Encode a datagram of the current axis values with the next sequence number, and write it to
+     * the server, replacing any datagram which wasn't sent yet. Must be called while holding
+     * encodeLock, in UDP mode.
+     */
+    private void sendDatagram() {
+        super.write(DATAGRAM_KEY, encodeDatagram());
+    }
+
+    /**
+     * Must be called while holding encodeLock, in UDP mode.
+     * @return ByteBuffer - a scratch buffer holding a datagram of the current axis values, flipped.
+     */
+    private ByteBuffer encodeDatagram() {
+        ByteBuffer buffer = scratch(0, datagram.size());
+        datagram.encode(buffer, sequence++, axisValues);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Keep given value as the last value of given control. Must be called while holding
+     * encodeLock.
+     * @param control Control - the control.
+     * @param value double - the value.
+     */
+    private void remember(Control control, double value) {
+        if (control.getId() >= lastValues.length) {
+            int length = lastValues.length;
+            lastValues = Arrays.copyOf(lastValues, registry.size());
+            Arrays.fill(lastValues, length, lastValues.length, Double.NaN);
+        }
+        lastValues[control.getId()] = value;
+    }
+
+    /**
+     * Get the cleared scratch buffer of given index, big enough for a command with given prefix.
+     * Buffers are only allocated the first time an index or a longer prefix is used.
+     * Must be called while holding encodeLock.
+     * @param index int - the index of the buffer.
+     * @param prefix byte[] - the prefix of the command.
+     * @return ByteBuffer - the buffer.
+     */
+    private ByteBuffer scratch(int index, byte[] prefix) {
+        return scratch(index, CommandEncoder.maxCommandLength(prefix));
+    }
+
+    /**
+     * Get the cleared scratch buffer of given index, of at least given capacity.
+     * Must be called while holding encodeLock.
+     * @param index int - the index of the buffer.
+     * @param length int - the capacity needed.
+     * @return ByteBuffer - the buffer.
+     */
+    private ByteBuffer scratch(int index, int length) {
+        if (index >= scratch.length) {
+            ByteBuffer[] grown = new ByteBuffer[index + 1];
+            System.arraycopy(scratch, 0, grown, 0, scratch.length);
+            scratch = grown;
+        }
+        if (scratch[index] == null || scratch[index].capacity() < length) {
+            scratch[index] = ByteBuffer.allocate(length);
+        }
+        scratch[index].clear();
+        return scratch[index];
+    }
+
+    /**
+     * Flip the first count scratch buffers from writing to reading.
+     * @param count int - the number of buffers.
+     */
+    private void flipScratch(int count) {
+        for (int i = 0; i < count; i++) {
+            scratch[i].flip();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.exercise4.Model;
+
+/**
+ * Measures the quality of a ConnectionEngine's link to the server: how long it took to connect
+ * and to send the first command, how many times it reconnected and for how long it was down.
+ * Updated by the engine's thread, readable from any thread.
+ */
+public class LinkStats {
+
+    private long reconnectCount = 0;
+    private long failedAttempts = 0;
+    private long totalDowntime = 0;
+    private long lastDowntime = 0;
+    private long longestDowntime = 0;
+    private boolean down = false;
+    private long downSince = 0;
+    // Negative until measured:
+    private long connectStart = -1;
+    private long connectTime = -1;
+    private long firstCommandTime = -1;
+
+    /**
+     * Called when the engine started connecting.
+     * @param now long - System.nanoTime() of the start.
+     */
+    synchronized void onConnectStarted(long now) {
+        connectStart = now;
+    }
+
+    /**
+     * Called when the connection was first established.
+     * @param now long - System.nanoTime() of the connection.
+     */
+    synchronized void onConnected(long now) {
+        if (connectTime < 0 && connectStart >= 0) {
+            connectTime = now - connectStart;
+        }
+    }
+
+    /**
+     * Called when the first frame of commands was written.
+     * @param now long - System.nanoTime() of the write.
+     */
+    synchronized void onFirstCommand(long now) {
+        if (firstCommandTime < 0 && connectStart >= 0) {
+            firstCommandTime = now - connectStart;
+        }
+    }
+
+    /**
+     * Called when the connection was lost.
+     * @param now long - System.nanoTime() of the failure.
+     */
+    synchronized void onDisconnected(long now) {
+        if (!down) {
+            down = true;
+            downSince = now;
+        }
+    }
+
+    /**
+     * Called when a reconnect attempt failed.
+     */
+    synchronized void onAttemptFailed() {
+        failedAttempts++;
+    }
+
+    /**
+     * Called when the connection was established again after being lost.
+     * @param now long - System.nanoTime() of the reconnection.
+     */
+    synchronized void onReconnected(long now) {
+        if (!down) {
+            return;
+        }
+        lastDowntime = now - downSince;
+        totalDowntime += lastDowntime;
+        longestDowntime = Math.max(longestDowntime, lastDowntime);
+        reconnectCount++;
+        down = false;
+    }
+
+    /**
+     * @return long - the time from starting to connect until connected, in nanoseconds, or -1 if
+     *         not connected yet.
+     */
+    public synchronized long getConnectNanos() {
+        return connectTime;
+    }
+
+    /**
+     * @return long - the time from starting to connect until the first command was written, in
+     *         nanoseconds, or -1 if none was yet. When connecting ahead of time, this includes
+     *         the time until there was a command to send.
+     */
+    public synchronized long getFirstCommandNanos() {
+        return firstCommandTime;
+    }
+
+    /**
+     * @return long - the number of times the connection was established again after being lost.
+     */
+    public synchronized long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * @return long - the number of reconnect attempts which failed.
+     */
+    public synchronized long getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    /**
+     * @return long - the sum of all finished outages, in nanoseconds.
+     */
+    public synchronized long getTotalDowntimeNanos() {
+        return totalDowntime;
+    }
+
+    /**
+     * @return long - the length of the last finished outage, in nanoseconds.
+     */
+    public synchronized long getLastDowntimeNanos() {
+        return lastDowntime;
+    }
+
+    /**
+     * @return long - the length of the longest finished outage, in nanoseconds.
+     */
+    public synchronized long getLongestDowntimeNanos() {
+        return longestDowntime;
+    }
+
+    /**
+     * @return boolean - whether the link is currently down.
+     */
+    public synchronized boolean isDown() {
+        return down;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "connect=" + toMillis(connectTime) + " firstCommand=" + toMillis(firstCommandTime)
+                + " reconnects=" + reconnectCount + " failedAttempts=" + failedAttempts
+                + " downtime=" + totalDowntime / 1000000 + "ms"
+                + " longest=" + longestDowntime / 1000000 + "ms";
+    }
+
+    private static String toMillis(long nanos) {
+        return nanos < 0 ? "-" : nanos / 1000000 + "ms";
+    }
+}
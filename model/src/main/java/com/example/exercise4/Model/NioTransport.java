@@ -0,0 +1,191 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A Transport over a non-blocking java.nio SocketChannel. Connecting and writing are driven by a
+ * Selector: connect waits for OP_CONNECT up to the connect timeout, and a write which the socket
+ * can't take at once waits for OP_WRITE instead of blocking inside the socket. While waiting,
+ * isWritable returns false, which lets the producers apply backpressure.
+ * TCP_NODELAY is always set, so small command frames are sent right away.
+ * Reads wait for OP_READ on a second Selector, so a receiving thread never touches the writing
+ * thread's one.
+ */
+public class NioTransport implements Transport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 3000;
+    public static final int DEFAULT_WRITE_TIMEOUT = 3000;
+
+    private final String host;
+    private final int port;
+    private final int connectTimeout;
+    private final int writeTimeout;
+    private final int sendBufferSize;
+    // Resolved ahead of time, or null to resolve the host when connecting.
+    private final InetSocketAddress address;
+    private SocketChannel channel;
+    private Selector selector;
+    private SelectionKey key;
+    private Selector readSelector;
+    private volatile boolean writable = false;
+
+    /**
+     * NioTransport's constructor, with the default timeouts and the system's send buffer size.
+     * @param host String - the server's ip address or host name.
+     * @param port int - the server's port number.
+     */
+    public NioTransport(String host, int port) {
+        this(host, port, DEFAULT_CONNECT_TIMEOUT, DEFAULT_WRITE_TIMEOUT, 0);
+    }
+
+    /**
+     * NioTransport's constructor. The host is only resolved when connecting.
+     * @param host String - the server's ip address or host name.
+     * @param port int - the server's port number.
+     * @param connectTimeout int - the connect timeout in milliseconds.
+     * @param writeTimeout int - how long a write may wait for the socket, in milliseconds.
+     * @param sendBufferSize int - the socket's send buffer size in bytes, or 0 for the default.
+     */
+    public NioTransport(String host, int port, int connectTimeout, int writeTimeout,
+                        int sendBufferSize) {
+        this(host, port, null, connectTimeout, writeTimeout, sendBufferSize);
+    }
+
+    /**
+     * NioTransport's constructor, with the default timeouts and the system's send buffer size,
+     * connecting to an address resolved ahead of time (e.g. by an EndpointResolver), so
+     * connecting doesn't look the host up again.
+     * @param address InetSocketAddress - the server's resolved address.
+     */
+    public NioTransport(InetSocketAddress address) {
+        this(EndpointResolver.hostOf(address), address.getPort(), address,
+                DEFAULT_CONNECT_TIMEOUT, DEFAULT_WRITE_TIMEOUT, 0);
+    }
+
+    private NioTransport(String host, int port, InetSocketAddress address, int connectTimeout,
+                         int writeTimeout, int sendBufferSize) {
+        this.host = host;
+        this.address = address;
+        this.port = port;
+        this.connectTimeout = connectTimeout;
+        this.writeTimeout = writeTimeout;
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        InetSocketAddress address =
+                this.address != null ? this.address : new InetSocketAddress(host, port);
+        selector = Selector.open();
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        if (sendBufferSize > 0) {
+            channel.socket().setSendBufferSize(sendBufferSize);
+        }
+        key = channel.register(selector, SelectionKey.OP_CONNECT);
+        if (!channel.connect(address)) {
+            long deadline = System.currentTimeMillis() + connectTimeout;
+            while (!channel.finishConnect()) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    throw new SocketTimeoutException("Connect timed out");
+                }
+                selector.select(left);
+                selector.selectedKeys().clear();
+            }
+        }
+        key.interestOps(0);
+        readSelector = Selector.open();
+        channel.register(readSelector, SelectionKey.OP_READ);
+        writable = true;
+    }
+
+    @Override
+    public void write(ByteBuffer frame) throws IOException {
+        channel.write(frame);
+        if (!frame.hasRemaining()) {
+            return;
+        }
+        // The socket's buffer is full - wait until the server reads some of it.
+        writable = false;
+        try {
+            key.interestOps(SelectionKey.OP_WRITE);
+            long deadline = System.currentTimeMillis() + writeTimeout;
+            while (frame.hasRemaining()) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    throw new SocketTimeoutException("Write timed out");
+                }
+                selector.select(left);
+                selector.selectedKeys().clear();
+                channel.write(frame);
+            }
+            key.interestOps(0);
+        } finally {
+            writable = channel.isOpen();
+        }
+    }
+
+    /**
+     * Write as much of given frame as the socket takes right now, without waiting.
+     * @param frame ByteBuffer - the frame, its position is advanced past the bytes written.
+     * @return boolean - true if the whole frame was written.
+     * @throws IOException if the write failed.
+     */
+    public boolean writeAvailable(ByteBuffer frame) throws IOException {
+        channel.write(frame);
+        writable = !frame.hasRemaining();
+        return writable;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        try {
+            int count;
+            while ((count = channel.read(dst)) == 0 && dst.hasRemaining()) {
+                readSelector.select();
+                readSelector.selectedKeys().clear();
+            }
+            return count;
+        } catch (ClosedSelectorException e) { // Closed while waiting.
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * @return SocketChannel - the underlying channel, or null before connecting.
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writable = false;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            if (selector != null) {
+                selector.close();
+            }
+            if (readSelector != null) {
+                readSelector.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.exercise4.Model;
+
+import java.util.Random;
+
+/**
+ * Decides how a ConnectionEngine reconnects after losing its connection: the delay before each
+ * attempt grows exponentially from initialDelay up to maxDelay, and is randomly shortened by up to
+ * jitter of itself, so several clients don't all retry at the same moment.
+ */
+public class ReconnectPolicy {
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final double multiplier;
+    private final double jitter;
+    private final int maxAttempts;
+
+    /**
+     * ReconnectPolicy's constructor, retrying forever from 250 ms up to 5 s with 20% jitter.
+     */
+    public ReconnectPolicy() {
+        this(250, 5000, 2.0, 0.2, 0);
+    }
+
+    /**
+     * ReconnectPolicy's constructor.
+     * @param initialDelay long - the delay before the first attempt, in milliseconds.
+     * @param maxDelay long - the maximum delay before an attempt, in milliseconds.
+     * @param multiplier double - how much the delay grows after every failed attempt (at least 1).
+     * @param jitter double - the largest part of the delay which may be randomly cut (0 - 1).
+     * @param maxAttempts int - the number of attempts after a single failure, or 0 for no limit.
+     */
+    public ReconnectPolicy(long initialDelay, long maxDelay, double multiplier, double jitter,
+                           int maxAttempts) {
+        if (initialDelay < 0 || maxDelay < initialDelay || multiplier < 1
+                || jitter < 0 || jitter > 1 || maxAttempts < 0) {
+            throw new IllegalArgumentException("Invalid reconnect policy.");
+        }
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param attempt int - the number of attempts already made since the connection was lost.
+     * @return boolean - whether another attempt should be made.
+     */
+    public boolean shouldRetry(int attempt) {
+        return maxAttempts == 0 || attempt < maxAttempts;
+    }
+
+    /**
+     * Get the delay before given attempt.
+     * @param attempt int - the number of attempts already made since the connection was lost.
+     * @param random Random - the source of the jitter.
+     * @return long - the delay in milliseconds.
+     */
+    public long getDelay(int attempt, Random random) {
+        double delay = initialDelay * Math.pow(multiplier, attempt);
+        delay = Math.min(delay, maxDelay);
+        delay -= delay * jitter * random.nextDouble();
+        return (long) delay;
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.exercise4.Model;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A CommandQueue which keeps every command given to it, in order, in a ring of preallocated slots
+ * (of MAX_COMMAND_LENGTH bytes each), for command streams where ordering must be preserved. Keys
+ * are ignored.
+ * Unlike FifoCommandQueue nothing is allocated per command and no lock is taken: the producer only
+ * moves the tail and the sender thread only moves the head, which it checks with a single
+ * compareAndSet per frame. How a side waits for the other (the sender for commands, the producer
+ * for room) is chosen by the WaitStrategy, and what a put into a full ring does by the Overflow.
+ * Must be put to by a single thread at a time (e.g. while holding the client's lock) and drained
+ * by a single thread - the ConnectionEngine's.
+ */
+public class RingCommandQueue implements CommandQueue {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public enum WaitStrategy {
+        // Park right away, and be unparked by the other side.
+        BLOCKING,
+        // Keep yielding the CPU. Lowest wakeup latency, but keeps a core busy while idle.
+        YIELDING,
+        // Spin and then yield for a bounded number of tries, and only then park.
+        SPIN_THEN_PARK
+    }
+
+    public enum Overflow {
+        // The producer waits for the sender to make room.
+        BLOCK,
+        // The oldest commands are dropped to make room.
+        DROP_OLDEST,
+        // The put throws an IllegalStateException.
+        FAIL
+    }
+
+    // How long SPIN_THEN_PARK spins, and then yields, before parking.
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 10;
+    // SPIN_THEN_PARK's parks are timed, which bounds the wait even if a wakeup is missed.
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final byte[] slots;
+    private final int[] lengths;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final Overflow overflow;
+
+    // The next command to take, moved by the sender (and by the producer when dropping).
+    private final AtomicLong head = new AtomicLong();
+    // The next slot to put to, only moved by the producer.
+    private final AtomicLong tail = new AtomicLong();
+    private volatile boolean closed = false;
+    // The threads parked waiting for the other side, if any.
+    private volatile Thread parkedSender;
+    private volatile Thread parkedProducer;
+    // The draining thread, which never waits for room on itself.
+    private volatile Thread sender;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * RingCommandQueue's constructor, with DEFAULT_CAPACITY slots, spinning and then parking, and
+     * blocking the producer when full.
+     */
+    public RingCommandQueue() {
+        this(DEFAULT_CAPACITY, WaitStrategy.SPIN_THEN_PARK, Overflow.BLOCK);
+    }
+
+    /**
+     * RingCommandQueue's constructor.
+     * @param capacity int - the number of slots, a power of two.
+     * @param waitStrategy WaitStrategy - how a side waits for the other.
+     * @param overflow Overflow - what a put into a full ring does.
+     */
+    public RingCommandQueue(int capacity, WaitStrategy waitStrategy, Overflow overflow) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("The capacity must be a power of two.");
+        }
+        this.slots = new byte[capacity * MAX_COMMAND_LENGTH];
+        this.lengths = new int[capacity];
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        this.overflow = overflow;
+    }
+
+    @Override
+    public void put(String key, ByteBuffer command) {
+        checkLength(command);
+        long start = tail.get();
+        if (!reserve(start + 1)) {
+            return;
+        }
+        copy(start, command);
+        publish(start + 1);
+    }
+
+    /**
+     * Add all given commands with a single move of the tail, so drainTo takes them together.
+     * @param keys String[] - NOT USED
+     * @param commands ByteBuffer[] - the encoded commands.
+     * @param count int - the number of commands to add, at most the capacity.
+     */
+    @Override
+    public void putAll(String[] keys, ByteBuffer[] commands, int count) {
+        if (count > lengths.length) {
+            throw new IllegalArgumentException("More commands than the queue's capacity.");
+        }
+        for (int i = 0; i < count; i++) {
+            checkLength(commands[i]);
+        }
+        long start = tail.get();
+        if (!reserve(start + count)) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            copy(start + i, commands[i]);
+        }
+        publish(start + count);
+    }
+
+    private static void checkLength(ByteBuffer command) {
+        if (command.remaining() > MAX_COMMAND_LENGTH) {
+            throw new IllegalArgumentException("Command is longer than "
+                    + MAX_COMMAND_LENGTH + " bytes.");
+        }
+    }
+
+    /**
+     * Make sure the ring has room up to given tail, as the overflow policy says.
+     * @param end long - the tail after the put.
+     * @return boolean - false if the commands should be ignored (closed, or interrupted while
+     *         waiting for room).
+     * @throws IllegalStateException if the ring is full and the policy is FAIL.
+     */
+    private boolean reserve(long end) {
+        while (!closed) {
+            long start = head.get();
+            long excess = end - start - lengths.length;
+            if (excess <= 0) {
+                return true;
+            }
+            if (overflow == Overflow.FAIL) {
+                throw new IllegalStateException("The command queue is full.");
+            }
+            // The sender would never make room for itself (e.g. while resyncing).
+            if (overflow == Overflow.DROP_OLDEST || Thread.currentThread() == sender) {
+                if (head.compareAndSet(start, start + excess)) {
+                    droppedCount.addAndGet(excess);
+                }
+                continue;
+            }
+            try {
+                awaitRoom(end);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void copy(long position, ByteBuffer command) {
+        int index = (int) position & mask;
+        // Read without duplicate(), which would allocate a new buffer object.
+        int start = command.position();
+        lengths[index] = command.remaining();
+        command.get(slots, index * MAX_COMMAND_LENGTH, lengths[index]);
+        command.position(start);
+    }
+
+    /**
+     * Move the tail past the copied commands, and wake the sender if it's parked.
+     */
+    private void publish(long end) {
+        // A volatile write, so it's ordered before reading parkedSender.
+        tail.set(end);
+        Thread parked = parkedSender;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    /**
+     * Wait until a command is available, then copy as many commands as fit into given frame, in
+     * order, and move the head past them. If the producer dropped any of them meanwhile (their
+     * slots may have been overwritten while copying), the frame is rewound and it's retried.
+     */
+    @Override
+    public int drainTo(ByteBuffer frame) throws InterruptedException {
+        sender = Thread.currentThread();
+        while (true) {
+            long start = head.get();
+            long end = tail.get();
+            if (start == end) {
+                if (closed) {
+                    if (tail.get() == head.get()) {
+                        return -1;
+                    }
+                    continue;
+                }
+                awaitCommands();
+                continue;
+            }
+            int mark = frame.position();
+            long next = start;
+            while (next < end) {
+                int index = (int) next & mask;
+                int length = lengths[index];
+                if (length > frame.remaining()) {
+                    break;
+                }
+                frame.put(slots, index * MAX_COMMAND_LENGTH, length);
+                next++;
+            }
+            if (head.compareAndSet(start, next)) {
+                Thread parked = parkedProducer;
+                if (parked != null) {
+                    LockSupport.unpark(parked);
+                }
+                return (int) (next - start);
+            }
+            frame.position(mark);
+        }
+    }
+
+    private void awaitCommands() throws InterruptedException {
+        int tries = 0;
+        while (!closed && tail.get() == head.get()) {
+            if (idle(tries++)) {
+                continue;
+            }
+            parkedSender = Thread.currentThread();
+            try {
+                // Checked again after announcing the park, so a publish can't be missed.
+                if (!closed && tail.get() == head.get()) {
+                    park();
+                }
+            } finally {
+                parkedSender = null;
+            }
+        }
+    }
+
+    private void awaitRoom(long end) throws InterruptedException {
+        int tries = 0;
+        while (!closed && end - head.get() > lengths.length) {
+            if (idle(tries++)) {
+                continue;
+            }
+            parkedProducer = Thread.currentThread();
+            try {
+                if (!closed && end - head.get() > lengths.length) {
+                    park();
+                }
+            } finally {
+                parkedProducer = null;
+            }
+        }
+    }
+
+    /**
+     * Wait a little without parking, as the wait strategy allows.
+     * @param tries int - the number of times waited so far.
+     * @return boolean - false if it's time to park instead.
+     */
+    private boolean idle(int tries) {
+        switch (waitStrategy) {
+            case YIELDING:
+                Thread.yield();
+                return true;
+            case SPIN_THEN_PARK:
+                if (tries < SPIN_TRIES) {
+                    return true; // Spin - the caller checks again right away.
+                }
+                if (tries < SPIN_TRIES + YIELD_TRIES) {
+                    Thread.yield();
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void park() throws InterruptedException {
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            LockSupport.park(this);
+        } else {
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    @Override
+    public void clear() {
+        long end = tail.get();
+        long start;
+        while ((start = head.get()) < end && !head.compareAndSet(start, end)) {
+            // The sender took some meanwhile - try again.
+        }
+        Thread parked = parkedProducer;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread parked = parkedSender;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+        parked = parkedProducer;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    /**
+     * @return int - the number of slots.
+     */
+    public int getCapacity() {
+        return lengths.length;
+    }
+
+    /**
+     * @return long - the number of commands dropped to make room, by DROP_OLDEST or when the
+     *         sender itself put into a full ring.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.exercise4.Model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the send path of a ConnectionEngine, from the input which produced a command to the
+ * write which sent it. Each command is stamped at four points, all System.nanoTime():
+ * input - when the input was made (e.g. the MotionEvent's time), given by onInput;
+ * enqueue - when the command was put on the queue;
+ * dequeue - when the engine took it off the queue into a frame;
+ * flush - when the transport finished writing that frame.
+ * Commands are coalesced on their way, so each frame is measured by its newest command - the
+ * value the server actually receives. The stamps are handed between threads without locks, so a
+ * frame may occasionally be measured by a command of the next frame.
+ * Besides the latency histograms, counts the bytes, commands and frames sent, the commands dropped
+ * when a write failed, the commands coalesced on the queue, the commands a full queue dropped to
+ * make room and the queue's depth.
+ * The regularity of the sends is measured by the interval between consecutive flushes, and the
+ * jitter - how much each interval differs from the one before it. Gaps longer than
+ * MAX_SEND_INTERVAL (e.g. while the controls are left alone) aren't measured.
+ */
+public class SendMetrics {
+
+    public static final long MAX_SEND_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final CommandQueue queue;
+
+    private final LatencyHistogram inputToEnqueue = new LatencyHistogram();
+    private final LatencyHistogram enqueueToDequeue = new LatencyHistogram();
+    private final LatencyHistogram dequeueToFlush = new LatencyHistogram();
+    private final LatencyHistogram inputToFlush = new LatencyHistogram();
+    private final LatencyHistogram sendInterval = new LatencyHistogram();
+    private final LatencyHistogram sendJitter = new LatencyHistogram();
+
+    // Written by the producers, read by the engine's thread.
+    private volatile long inputTime = 0;
+    private volatile long pendingInputTime = 0;
+    private volatile long pendingEnqueueTime = 0;
+    // Used by the engine's thread only.
+    private long frameInputTime = 0;
+    private long frameEnqueueTime = 0;
+    private long frameDequeueTime = 0;
+    // Only used by the engine's thread, 0 if the last interval wasn't measured:
+    private long lastFlushTime = 0;
+    private long lastInterval = 0;
+
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong commandsSent = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong commandsDropped = new AtomicLong();
+    private volatile int queueDepth = 0;
+    private volatile int maxQueueDepth = 0;
+
+    // The totals when the rates were last sampled - guarded by this.
+    private long rateTime = System.nanoTime();
+    private long rateBytes = 0;
+    private long rateCommands = 0;
+    private double bytesPerSecond = 0;
+    private double commandsPerSecond = 0;
+
+    /**
+     * SendMetrics' constructor.
+     * @param queue CommandQueue - the measured engine's queue, read for its depth, coalescing and
+     *              overflow.
+     */
+    public SendMetrics(CommandQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Stamp the input of the next command put on the queue.
+     * @param time long - when the input was made, in System.nanoTime() time. On Android,
+     *             MotionEvent.getEventTime() * 1000000 is on the same clock.
+     */
+    public void onInput(long time) {
+        inputTime = time;
+    }
+
+    /**
+     * Called right before a command is put on the queue. The input stamp is taken by the first
+     * command put after it, and commands without one (like telemetry requests) don't replace the
+     * stamps of a command still waiting.
+     * @param now long - System.nanoTime()
+     */
+    public void onEnqueue(long now) {
+        long input = inputTime;
+        if (input != 0) {
+            inputTime = 0;
+            inputToEnqueue.record(now - input);
+            pendingInputTime = input;
+            pendingEnqueueTime = now;
+        } else if (pendingEnqueueTime == 0) {
+            pendingEnqueueTime = now;
+        }
+    }
+
+    /**
+     * Called by the engine after taking commands off the queue into a frame.
+     * @param now long - System.nanoTime()
+     */
+    void onDequeue(long now) {
+        frameInputTime = pendingInputTime;
+        frameEnqueueTime = pendingEnqueueTime;
+        frameDequeueTime = now;
+        pendingInputTime = 0;
+        pendingEnqueueTime = 0;
+        if (frameEnqueueTime != 0) {
+            enqueueToDequeue.record(now - frameEnqueueTime);
+        }
+        int depth = queue.size();
+        queueDepth = depth;
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    /**
+     * Called by the engine after a frame was written.
+     * @param now long - System.nanoTime()
+     * @param bytes int - the frame's size.
+     * @param commands int - the number of commands in the frame.
+     */
+    void onFlush(long now, int bytes, int commands) {
+        dequeueToFlush.record(now - frameDequeueTime);
+        if (frameInputTime != 0) {
+            inputToFlush.record(now - frameInputTime);
+        }
+        bytesSent.addAndGet(bytes);
+        commandsSent.addAndGet(commands);
+        framesSent.incrementAndGet();
+        long interval = lastFlushTime == 0 ? 0 : now - lastFlushTime;
+        lastFlushTime = now;
+        if (interval <= 0 || interval > MAX_SEND_INTERVAL) {
+            lastInterval = 0;
+            return;
+        }
+        sendInterval.record(interval);
+        if (lastInterval != 0) {
+            sendJitter.record(Math.abs(interval - lastInterval));
+        }
+        lastInterval = interval;
+    }
+
+    /**
+     * Called by the engine when the write of a frame failed.
+     * @param commands int - the number of commands in the frame.
+     */
+    void onDropped(int commands) {
+        commandsDropped.addAndGet(commands);
+    }
+
+    /**
+     * @return LatencyHistogram - from the input to putting its command on the queue.
+     */
+    public LatencyHistogram getInputToEnqueue() {
+        return inputToEnqueue;
+    }
+
+    /**
+     * @return LatencyHistogram - the time commands waited on the queue.
+     */
+    public LatencyHistogram getEnqueueToDequeue() {
+        return enqueueToDequeue;
+    }
+
+    /**
+     * @return LatencyHistogram - the time frames took to be written.
+     */
+    public LatencyHistogram getDequeueToFlush() {
+        return dequeueToFlush;
+    }
+
+    /**
+     * @return LatencyHistogram - from the input to the end of the write which sent it.
+     */
+    public LatencyHistogram getInputToFlush() {
+        return inputToFlush;
+    }
+
+    /**
+     * @return LatencyHistogram - the intervals between consecutive flushes.
+     */
+    public LatencyHistogram getSendInterval() {
+        return sendInterval;
+    }
+
+    /**
+     * @return LatencyHistogram - how much each interval between flushes differed from the one
+     *         before it.
+     */
+    public LatencyHistogram getSendJitter() {
+        return sendJitter;
+    }
+
+    /**
+     * @return long - the bytes written so far.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return long - the commands written so far.
+     */
+    public long getCommandsSent() {
+        return commandsSent.get();
+    }
+
+    /**
+     * @return long - the frames written so far.
+     */
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    /**
+     * @return long - the commands lost because the write of their frame failed.
+     */
+    public long getCommandsDropped() {
+        return commandsDropped.get();
+    }
+
+    /**
+     * @return long - the commands replaced on the queue by a newer one, or 0 if the queue isn't a
+     *         CoalescingCommandQueue.
+     */
+    public long getCommandsCoalesced() {
+        return queue instanceof CoalescingCommandQueue
+                ? ((CoalescingCommandQueue) queue).getCoalescedCount() : 0;
+    }
+
+    /**
+     * @return long - the commands dropped by a full queue to make room for newer ones, or 0 if the
+     *         queue isn't a RingCommandQueue.
+     */
+    public long getCommandsOverflowed() {
+        return queue instanceof RingCommandQueue
+                ? ((RingCommandQueue) queue).getDroppedCount() : 0;
+    }
+
+    /**
+     * @return int - the commands left on the queue after the last frame was taken.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return int - the most commands ever left on the queue after taking a frame.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Compute the bytes and commands sent per second since the last call. Meant to be called
+     * periodically, e.g. by whatever displays the metrics.
+     * @param now long - System.nanoTime()
+     */
+    public synchronized void sampleRates(long now) {
+        double seconds = (now - rateTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        if (seconds <= 0) {
+            return;
+        }
+        long bytes = bytesSent.get();
+        long commands = commandsSent.get();
+        bytesPerSecond = (bytes - rateBytes) / seconds;
+        commandsPerSecond = (commands - rateCommands) / seconds;
+        rateTime = now;
+        rateBytes = bytes;
+        rateCommands = commands;
+    }
+
+    /**
+     * @return double - the bytes sent per second, as of the last sampleRates call.
+     */
+    public synchronized double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return double - the commands sent per second, as of the last sampleRates call.
+     */
+    public synchronized double getCommandsPerSecond() {
+        return commandsPerSecond;
+    }
+
+    /**
+     * Forget every measurement, e.g. before a test run.
+     */
+    public synchronized void reset() {
+        inputToEnqueue.reset();
+        enqueueToDequeue.reset();
+        dequeueToFlush.reset();
+        inputToFlush.reset();
+        sendInterval.reset();
+        sendJitter.reset();
+        bytesSent.set(0);
+        commandsSent.set(0);
+        framesSent.set(0);
+        commandsDropped.set(0);
+        maxQueueDepth = 0;
+        rateTime = System.nanoTime();
+        rateBytes = 0;
+        rateCommands = 0;
+        bytesPerSecond = 0;
+        commandsPerSecond = 0;
+    }
+
+    /**
+     * @return String - every metric, a line each. Latencies are p50/p99/max.
+     */
+    @Override
+    public String toString() {
+        return "input->enqueue " + inputToEnqueue + "\n"
+                + "enqueue->dequeue " + enqueueToDequeue + "\n"
+                + "dequeue->flush " + dequeueToFlush + "\n"
+                + "input->flush " + inputToFlush + "\n"
+                + "send interval " + sendInterval + "\n"
+                + "send jitter " + sendJitter + "\n"
+                + String.format("rate %.0f commands/s %.0f bytes/s",
+                        getCommandsPerSecond(), getBytesPerSecond()) + "\n"
+                + "sent " + getCommandsSent() + " commands " + getFramesSent() + " frames "
+                + getBytesSent() + " bytes\n"
+                + "coalesced " + getCommandsCoalesced() + " overflowed "
+                + getCommandsOverflowed() + " dropped " + getCommandsDropped() + "\n"
+                + "queue depth " + getQueueDepth() + " max " + getMaxQueueDepth() + "\n";
+    }
+}
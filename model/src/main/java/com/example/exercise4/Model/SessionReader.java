@@ -0,0 +1,163 @@
+package com.example.exercise4.Model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * Reads back a log written by a SessionRecorder, a record at a time. The file is memory-mapped,
+ * so reading doesn't copy it or allocate per record.
+ * A log whose last record was cut short (e.g. the app was killed while recording) is read up to
+ * that record.
+ * A SessionReader isn't thread safe.
+ */
+public class SessionReader {
+
+    private final FileChannel channel;
+    private final ByteBuffer log;
+    private final int precision;
+    private final double scale;
+
+    // The paths defined so far, and the last quantized value of each.
+    private final ArrayList<String> paths = new ArrayList<>();
+    private long[] lastValues = new long[8];
+
+    // The current record.
+    private long time = 0;
+    private int count = 0;
+    private String[] recordPaths = new String[2];
+    private double[] recordValues = new double[2];
+
+    /**
+     * SessionReader's constructor.
+     * @param file File - the log.
+     * @throws IOException if the file couldn't be read, or isn't a log of a supported version.
+     */
+    public SessionReader(File file) throws IOException {
+        channel = new FileInputStream(file).getChannel();
+        try {
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (log.remaining() < SessionRecorder.HEADER_SIZE
+                    || log.getInt() != SessionRecorder.MAGIC) {
+                throw new IOException(file + " isn't a session log.");
+            }
+            byte version = log.get();
+            if (version != SessionRecorder.VERSION) {
+                throw new IOException("Unsupported session log version " + version + ".");
+            }
+            precision = log.get();
+            scale = Math.pow(10, precision);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return int - the number of digits the values were kept with after the decimal point.
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Move to the next record.
+     * @return boolean - false if there are no more records.
+     * @throws IOException if the log is corrupt.
+     */
+    public boolean next() throws IOException {
+        if (!log.hasRemaining()) {
+            return false;
+        }
+        try {
+            long nextTime = time + getVarLong();
+            int nextCount = (int) getVarLong();
+            if (nextCount > recordPaths.length) {
+                recordPaths = new String[nextCount];
+                recordValues = new double[nextCount];
+            }
+            for (int i = 0; i < nextCount; i++) {
+                int index = (int) getVarLong();
+                if (index == paths.size()) {
+                    byte[] path = new byte[(int) getVarLong()];
+                    log.get(path);
+                    paths.add(new String(path, SessionRecorder.ASCII));
+                    if (index == lastValues.length) {
+                        long[] grown = new long[2 * lastValues.length];
+                        System.arraycopy(lastValues, 0, grown, 0, lastValues.length);
+                        lastValues = grown;
+                    }
+                } else if (index > paths.size() || index < 0) {
+                    throw new IOException("Undefined path index " + index + ".");
+                }
+                lastValues[index] += unZigZag(getVarLong());
+                recordPaths[i] = paths.get(index);
+                recordValues[i] = lastValues[index] / scale;
+            }
+            time = nextTime;
+            count = nextCount;
+            return true;
+        } catch (BufferUnderflowException e) { // The last record was cut short.
+            log.position(log.limit());
+            return false;
+        }
+    }
+
+    /**
+     * @return long - the nanoseconds from the start of the recording to the current record.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return int - the number of values of the current record.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param i int - the value's index in the record (0 - count - 1).
+     * @return String - the property path of given value of the current record.
+     */
+    public String getPath(int i) {
+        return recordPaths[i];
+    }
+
+    /**
+     * @param i int - the value's index in the record (0 - count - 1).
+     * @return double - given value of the current record.
+     */
+    public double getValue(int i) {
+        return recordValues[i];
+    }
+
+    /**
+     * Close the file.
+     * @throws IOException if closing failed.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long getVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = log.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer.");
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.exercise4.Model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+/**
+ * Records the values set on a FlightGearClient into a compact, append-only binary log, which a
+ * SessionReader reads back and a SessionReplayer sends again.
+ * The log starts with a header (MAGIC, VERSION and the precision of the values), followed by a
+ * record per set call: the nanoseconds since the previous record, the number of values, and for
+ * each value its path's index and its value. A path is written in full the first time it's used,
+ * and only its index after. Values are quantized to precision digits after the decimal point, as
+ * they are sent, and written as the difference from the path's previous value. Every number is a
+ * variable length integer, so a record of both controls at 60 updates per second takes around
+ * 10 bytes.
+ * Records are collected in a buffer and written to the file when it's full, so the thread
+ * setting the values only rarely writes to the file. A failed write stops the recording, and
+ * is kept for getException.
+ */
+public class SessionRecorder {
+
+    public static final int MAGIC = 0x46475352; // "FGSR"
+    public static final byte VERSION = 1;
+    // The header's size: MAGIC, VERSION and the precision.
+    public static final int HEADER_SIZE = 4 + 1 + 1;
+    // The size of the buffer records are collected in before being written.
+    public static final int BUFFER_SIZE = 64 * 1024;
+    // The most bytes a variable length long takes.
+    static final int MAX_VARINT_SIZE = 10;
+
+    static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final int precision;
+    private final double scale;
+
+    // The index of every path written so far, and its last quantized value.
+    private final HashMap<String, Integer> pathIndexes = new HashMap<>();
+    private long[] lastValues = new long[8];
+
+    // Reused by the record method of a single value.
+    private final String[] singlePath = new String[1];
+    private final double[] singleValue = new double[1];
+
+    private long lastTime;
+    private volatile long recordCount = 0;
+    private volatile long byteCount = HEADER_SIZE;
+    private volatile IOException exception;
+    private boolean closed = false;
+
+    /**
+     * SessionRecorder's constructor, quantizing values to CommandEncoder.DEFAULT_PRECISION.
+     * @param file File - the log, replaced if it exists.
+     * @throws IOException if the file couldn't be created.
+     */
+    public SessionRecorder(File file) throws IOException {
+        this(file, CommandEncoder.DEFAULT_PRECISION);
+    }
+
+    /**
+     * SessionRecorder's constructor. Times are recorded from now.
+     * @param file File - the log, replaced if it exists.
+     * @param precision int - the number of digits kept after the decimal point (0 -
+     *                  CommandEncoder.MAX_PRECISION).
+     * @throws IOException if the file couldn't be created.
+     */
+    public SessionRecorder(File file, int precision) throws IOException {
+        if (precision < 0 || precision > CommandEncoder.MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 0 and "
+                    + CommandEncoder.MAX_PRECISION + ".");
+        }
+        this.precision = precision;
+        this.scale = Math.pow(10, precision);
+        this.channel = new FileOutputStream(file).getChannel();
+        buffer.putInt(MAGIC).put(VERSION).put((byte) precision);
+        lastTime = System.nanoTime();
+    }
+
+    /**
+     * @return int - the number of digits kept after the decimal point.
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Record a single value set at given time.
+     * @param time long - the System.nanoTime() the value was set at.
+     * @param path String - the property path.
+     * @param value double - the value.
+     */
+    public synchronized void record(long time, String path, double value) {
+        singlePath[0] = path;
+        singleValue[0] = value;
+        record(time, singlePath, singleValue, 1);
+    }
+
+    /**
+     * Record the values set together at given time.
+     * @param time long - the System.nanoTime() the values were set at.
+     * @param paths String[] - the property paths.
+     * @param values double[] - the value of each property.
+     * @param count int - the number of values, from the start of the arrays.
+     */
+    public synchronized void record(long time, String[] paths, double[] values, int count) {
+        if (closed || exception != null) {
+            return;
+        }
+        int size = 2 * MAX_VARINT_SIZE;
+        for (int i = 0; i < count; i++) {
+            size += 2 * MAX_VARINT_SIZE;
+            if (!pathIndexes.containsKey(paths[i])) {
+                size += MAX_VARINT_SIZE + paths[i].length();
+            }
+        }
+        if (size > BUFFER_SIZE) {
+            throw new IllegalArgumentException("The values don't fit in a single record.");
+        }
+        if (buffer.remaining() < size && !flushBuffer()) {
+            return;
+        }
+        int start = buffer.position();
+        // Times from before the previous record (another thread's) are kept in order.
+        putVarLong(buffer, Math.max(0, time - lastTime));
+        lastTime = Math.max(time, lastTime);
+        putVarLong(buffer, count);
+        for (int i = 0; i < count; i++) {
+            Integer index = pathIndexes.get(paths[i]);
+            if (index == null) {
+                index = pathIndexes.size();
+                pathIndexes.put(paths[i], index);
+                putVarLong(buffer, index);
+                byte[] path = paths[i].getBytes(ASCII);
+                putVarLong(buffer, path.length);
+                buffer.put(path);
+                if (index == lastValues.length) {
+                    long[] grown = new long[2 * lastValues.length];
+                    System.arraycopy(lastValues, 0, grown, 0, lastValues.length);
+                    lastValues = grown;
+                }
+            } else {
+                putVarLong(buffer, index);
+            }
+            long quantized = Math.round(values[i] * scale);
+            putVarLong(buffer, zigZag(quantized - lastValues[index]));
+            lastValues[index] = quantized;
+        }
+        recordCount++;
+        byteCount += buffer.position() - start;
+    }
+
+    /**
+     * @return long - the records written so far.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return long - the size of the log, including records not written to the file yet.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return IOException - the exception which stopped the recording, or null.
+     */
+    public IOException getException() {
+        return exception;
+    }
+
+    /**
+     * Write the records collected so far to the file.
+     * @throws IOException if writing failed, now or before.
+     */
+    public synchronized void flush() throws IOException {
+        if (!closed && !flushBuffer()) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Write the remaining records and close the file. Values recorded after are ignored.
+     * @throws IOException if writing failed, now or before.
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * @return boolean - false if writing failed, now or before.
+     */
+    private boolean flushBuffer() {
+        if (exception != null) {
+            return false;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return true;
+        } catch (IOException e) {
+            exception = e;
+            return false;
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Write given non negative value as a variable length integer: 7 bits per byte, the lowest
+     * first, with the high bit set on every byte but the last.
+     * @param dst ByteBuffer - the buffer to write to.
+     * @param value long - the value.
+     */
+    static void putVarLong(ByteBuffer dst, long value) {
+        while ((value & ~0x7FL) != 0) {
+            dst.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        dst.put((byte) value);
+    }
+
+    /**
+     * Map a signed value to an unsigned one, so small negative values stay small.
+     * @param value long - the value.
+     * @return long - 0, -1, 1, -2... as 0, 1, 2, 3...
+     */
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
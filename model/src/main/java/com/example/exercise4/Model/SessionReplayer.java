@@ -0,0 +1,119 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the records of a session log through a FlightGearClient again, each record as a single
+ * set call, at the pace they were recorded, at a multiple of it, or as fast as the client takes
+ * them (MAX_SPEED). Meant for repeatable runs against the simulator, and for measuring the
+ * throughput of the send path.
+ * Runs on the thread calling run, until the log ends or stop is called.
+ */
+public class SessionReplayer implements Runnable {
+
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private final FlightGearClient client;
+    private final SessionReader reader;
+    private volatile double speed = 1;
+    private volatile boolean stopped = false;
+
+    private volatile long replayedCount = 0;
+    private volatile long duration = 0;
+    private volatile IOException exception;
+
+    /**
+     * SessionReplayer's constructor, replaying at the recorded pace.
+     * @param client FlightGearClient - the client to send the records through, connected.
+     * @param reader SessionReader - the log, read from its current record on.
+     */
+    public SessionReplayer(FlightGearClient client, SessionReader reader) {
+        this.client = client;
+        this.reader = reader;
+    }
+
+    /**
+     * Set the pace of the replay. Should be set before running.
+     * @param speed double - a multiple of the recorded pace (e.g. 2 replays twice as fast), or
+     *              MAX_SPEED to send every record as soon as the previous one was.
+     */
+    public void setSpeed(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive.");
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Stop replaying. The record being waited for isn't sent.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * @return long - the records sent so far.
+     */
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * @return long - the nanoseconds the replay took, once it ended.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return IOException - the exception which ended the replay (a corrupt log), or null.
+     */
+    public IOException getException() {
+        return exception;
+    }
+
+    /**
+     * Replay the log until it ends or stop is called.
+     */
+    @Override
+    public void run() {
+        double pace = speed;
+        String[] paths = new String[0];
+        double[] values = new double[0];
+        long start = System.nanoTime();
+        long firstTime = -1;
+        try {
+            while (!stopped && reader.next()) {
+                if (firstTime < 0) {
+                    firstTime = reader.getTime();
+                }
+                if (pace != MAX_SPEED) {
+                    long due = start + (long) ((reader.getTime() - firstTime) / pace);
+                    long wait;
+                    while (!stopped && (wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    if (stopped) {
+                        break;
+                    }
+                }
+                int count = reader.getCount();
+                if (count != paths.length) {
+                    paths = new String[count];
+                    values = new double[count];
+                }
+                for (int i = 0; i < count; i++) {
+                    paths[i] = reader.getPath(i);
+                    values[i] = reader.getValue(i);
+                }
+                client.set(paths, values);
+                replayedCount++;
+            }
+        } catch (IOException e) {
+            exception = e;
+        } finally {
+            duration = System.nanoTime() - start;
+        }
+    }
+}
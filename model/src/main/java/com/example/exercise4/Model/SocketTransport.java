@@ -0,0 +1,115 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * A Transport over a blocking java.net.Socket. Every write blocks the calling thread until the
+ * socket accepted the whole frame.
+ */
+public class SocketTransport implements Transport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 3000;
+
+    private final String host;
+    private final int port;
+    private final int connectTimeout;
+    // Resolved ahead of time, or null to resolve the host when connecting.
+    private final InetSocketAddress address;
+    private Socket socket;
+    private OutputStream out;
+    private InputStream in;
+    private volatile boolean writing = false;
+
+    /**
+     * SocketTransport's constructor. The host is only resolved when connecting.
+     * @param host String - the server's ip address or host name.
+     * @param port int - the server's port number.
+     * @param connectTimeout int - the connect timeout in milliseconds.
+     */
+    public SocketTransport(String host, int port, int connectTimeout) {
+        this(host, port, null, connectTimeout);
+    }
+
+    /**
+     * SocketTransport's constructor, connecting to an address resolved ahead of time (e.g. by an
+     * EndpointResolver), so connecting doesn't look the host up again.
+     * @param address InetSocketAddress - the server's resolved address.
+     * @param connectTimeout int - the connect timeout in milliseconds.
+     */
+    public SocketTransport(InetSocketAddress address, int connectTimeout) {
+        this(EndpointResolver.hostOf(address), address.getPort(), address, connectTimeout);
+    }
+
+    private SocketTransport(String host, int port, InetSocketAddress address,
+                            int connectTimeout) {
+        this.host = host;
+        this.port = port;
+        this.address = address;
+        this.connectTimeout = connectTimeout;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        InetSocketAddress address =
+                this.address != null ? this.address : new InetSocketAddress(host, port);
+        socket = new Socket();
+        // Added a timeout, because "new Socket(address, port)"'s timeout was too long.
+        socket.connect(address, connectTimeout);
+        out = socket.getOutputStream();
+        in = socket.getInputStream();
+    }
+
+    @Override
+    public void write(ByteBuffer frame) throws IOException {
+        writing = true;
+        try {
+            if (frame.hasArray()) {
+                out.write(frame.array(), frame.arrayOffset() + frame.position(),
+                        frame.remaining());
+                frame.position(frame.limit());
+            } else {
+                while (frame.hasRemaining()) {
+                    out.write(frame.get());
+                }
+            }
+            out.flush();
+        } finally {
+            writing = false;
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int count;
+        if (dst.hasArray()) {
+            count = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (count > 0) {
+                dst.position(dst.position() + count);
+            }
+        } else {
+            count = in.read();
+            if (count >= 0) {
+                dst.put((byte) count);
+                count = 1;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return out != null && !writing && !socket.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.exercise4.Model;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/***
+ * A class which implements a TCP Client which connects to a server with given IP and Port, and
+ * wait for inputs to send to the server. Uses a ConnectionEngine in order to use a background
+ * thread which try reading commands from a CommandQueue, and whenever commands are found, send
+ * them to the server over a Transport.
+ * The client doesn't depend on Android, listeners are called on the callback executor (direct by
+ * default), so a UI should set an executor posting to its own thread.
+ */
+public class TCPClient implements ConnectionEngine.Listener {
+
+    private ConnectionEngine engine;
+    private CommandQueue commandQueue;
+    private volatile OnExceptionListener exceptionListener;
+    private volatile OnStateChangeListener stateListener;
+
+    /**
+     * TCPClient's constructor.
+     * Initialize the commandQueue as a FifoCommandQueue, which sends every string written in order.
+     * @param ip String - the server's ip address
+     * @param port String - the server's port number.
+     */
+    public TCPClient(String ip, String port) {
+        this(ip, port, new FifoCommandQueue());
+    }
+
+    /**
+     * TCPClient's constructor. Connects with a blocking SocketTransport.
+     * @param ip String - the server's ip address
+     * @param port String - the server's port number.
+     * @param commandQueue CommandQueue - decides which of the written strings are sent, and when.
+     */
+    public TCPClient(String ip, String port, CommandQueue commandQueue) {
+        this(new SocketTransport(ip, Integer.parseInt(port),
+                SocketTransport.DEFAULT_CONNECT_TIMEOUT), commandQueue);
+    }
+
+    /**
+     * TCPClient's constructor. The client's engine runs on a thread of its own.
+     * @param transport Transport - the connection to the server, not connected yet.
+     * @param commandQueue CommandQueue - decides which of the written strings are sent, and when.
+     */
+    public TCPClient(Transport transport, CommandQueue commandQueue) {
+        this(new ConnectionEngine(transport, commandQueue));
+    }
+
+    /**
+     * TCPClient's constructor. The client's engine runs on given executor, which may be shared.
+     * @param transport Transport - the connection to the server, not connected yet.
+     * @param commandQueue CommandQueue - decides which of the written strings are sent, and when.
+     * @param executor ExecutorService - the executor the engine runs on.
+     */
+    public TCPClient(Transport transport, CommandQueue commandQueue, ExecutorService executor) {
+        this(new ConnectionEngine(transport, commandQueue, executor));
+    }
+
+    /**
+     * TCPClient's constructor. Nothing is sent until connect is called.
+     * @param engine ConnectionEngine - an engine which wasn't started yet.
+     */
+    public TCPClient(ConnectionEngine engine) {
+        this.engine = engine;
+        this.commandQueue = engine.getCommandQueue();
+        engine.setListener(this);
+    }
+
+    /**
+     * Start connecting to the server in the background. Commands written before connecting are
+     * sent once connected.
+     */
+    public void connect() {
+        engine.start();
+    }
+
+    /**
+     * Serve as the safe disconnect method for the client. Will clear the commandQueue from every
+     * string that wasn't sent yet, and close it (which serves as a disconnect flag).
+     */
+    public void disconnect() {
+        engine.disconnect(false);
+    }
+
+    /**
+     * Send given input to the server by adding it to the commandQueue.
+     * @param input String - given input.
+     */
+    public void write(String input) {
+        write(null, input);
+    }
+
+    /**
+     * Send given input to the server by adding it to the commandQueue under given key. A coalescing
+     * queue will only send the newest input written for each key.
+     * @param key String - what the input refers to.
+     * @param input String - given input.
+     */
+    public void write(String key, String input) {
+        // Stamped first, so the engine never takes the command before its stamp.
+        engine.getSendMetrics().onEnqueue(System.nanoTime());
+        commandQueue.put(key, ByteBuffer.wrap(input.getBytes()));
+    }
+
+    /**
+     * Send the remaining bytes of given buffer to the server by copying them to the commandQueue
+     * under given key. The buffer can be reused as soon as this method returns, so encoded commands
+     * never have to be turned into Strings.
+     * @param key String - what the command refers to.
+     * @param command ByteBuffer - the encoded command.
+     */
+    public void write(String key, ByteBuffer command) {
+        engine.getSendMetrics().onEnqueue(System.nanoTime());
+        commandQueue.put(key, command);
+    }
+
+    /**
+     * Send the first count given commands to the server together, in a single frame, by adding them
+     * to the commandQueue at once.
+     * @param keys String[] - what each command refers to.
+     * @param commands ByteBuffer[] - the encoded commands.
+     * @param count int - the number of commands to send.
+     */
+    public void writeAll(String[] keys, ByteBuffer[] commands, int count) {
+        engine.getSendMetrics().onEnqueue(System.nanoTime());
+        commandQueue.putAll(keys, commands, count);
+    }
+
+    /**
+     * Tells whether the transport can currently take a write without waiting. Producers can use
+     * it for backpressure, skipping intermediate values while the connection is busy.
+     * @return boolean - true if connected and the transport isn't busy.
+     */
+    public boolean isWritable() {
+        return engine.getTransport().isWritable();
+    }
+
+    /**
+     * @return CommandQueue - the queue used by the client, e.g. for reading its counters.
+     */
+    public CommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    /**
+     * @return ConnectionEngine.State - the current state of the client's connection.
+     */
+    public ConnectionEngine.State getState() {
+        return engine.getState();
+    }
+
+    /**
+     * Set the executor the listeners are called on. Should be set before connecting.
+     * @param callbackExecutor Executor
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        engine.setCallbackExecutor(callbackExecutor);
+    }
+
+    /**
+     * Set the policy used for reconnecting when the connection is lost. Without one (the default),
+     * the first failure is reported to the exceptionListener and ends the connection.
+     * Should be set before connecting.
+     * @param reconnectPolicy ReconnectPolicy - the policy, or null for no reconnecting.
+     */
+    public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        engine.setReconnectPolicy(reconnectPolicy);
+    }
+
+    /**
+     * Set the source of the state re-sent to the server after reconnecting.
+     * @param resyncSource ConnectionEngine.ResyncSource
+     */
+    protected void setResyncSource(ConnectionEngine.ResyncSource resyncSource) {
+        engine.setResyncSource(resyncSource);
+    }
+
+    /**
+     * Set the parser of the responses the server sends back. Should be set before connecting.
+     * @param telemetryParser TelemetryParser - the parser, or null to ignore responses.
+     */
+    public void setTelemetryParser(TelemetryParser telemetryParser) {
+        engine.setTelemetryParser(telemetryParser);
+    }
+
+    /**
+     * @return SendMetrics - the latencies and counts of the connection's send path.
+     */
+    public SendMetrics getSendMetrics() {
+        return engine.getSendMetrics();
+    }
+
+    /**
+     * @return LinkStats - the reconnect counts and downtimes of the connection.
+     */
+    public LinkStats getLinkStats() {
+        return engine.getLinkStats();
+    }
+
+    /**
+     * Invoke the exceptionListener if exists. Called by the engine on the callback executor.
+     * @param e Exception - the exception occurred in the background.
+     */
+    @Override
+    public void onException(Exception e) {
+        OnExceptionListener listener = exceptionListener;
+        if (listener != null) {
+            listener.onException(e);
+        }
+    }
+
+    /**
+     * Invoke the stateListener if exists. Called by the engine on the callback executor.
+     * @param state ConnectionEngine.State - the new state.
+     */
+    @Override
+    public void onStateChanged(ConnectionEngine.State state) {
+        OnStateChangeListener listener = stateListener;
+        if (listener != null) {
+            listener.onStateChanged(state);
+        }
+    }
+
+    /**
+     * Set the onExceptionListener for the class. Will be invoked when an exception occurs on the
+     * background thread.
+     * @param exceptionListener OnExceptionListener
+     */
+    public void setExceptionListener(OnExceptionListener exceptionListener) {
+        this.exceptionListener = exceptionListener;
+    }
+
+    /**
+     * Set the onStateChangeListener for the class. Will be invoked whenever the connection's state
+     * changes.
+     * @param stateListener OnStateChangeListener
+     */
+    public void setStateListener(OnStateChangeListener stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * A functional interface implemented by the exceptionLister.
+     */
+    public interface OnExceptionListener {
+        void onException(Exception e);
+    }
+
+    /**
+     * A functional interface implemented by the stateListener.
+     */
+    public interface OnStateChangeListener {
+        void onStateChanged(ConnectionEngine.State state);
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.exercise4.Model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses the telemetry the simulator sends back into a TelemetrySnapshot, as the bytes arrive.
+ * Two formats are understood, one line per update:
+ * PROPERTY - the responses of FlightGear's property server to "get &lt;path&gt;" commands, e.g.
+ * "/position/altitude-ft = '3021.5' (double)". Properties which aren't part of the snapshot are
+ * ignored.
+ * CSV - the output of a FlightGear generic protocol: one record per line, a value for each of the
+ * snapshot's properties in order, separated by the separator.
+ * Bytes are collected into a fixed line buffer and values are parsed straight from it, so no
+ * String or other object is created per line. Not thread-safe - used by a single receiving thread.
+ */
+public class TelemetryParser {
+
+    // The longest line kept - longer lines are dropped and counted as errors.
+    public static final int MAX_LINE_LENGTH = 1024;
+
+    public enum Format { PROPERTY, CSV }
+
+    // Exactly representable powers of ten, used for scaling parsed values.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    // Digits kept of a value's mantissa - more don't fit in a long.
+    private static final int MAX_DIGITS = 18;
+
+    private final TelemetrySnapshot snapshot;
+    private final Format format;
+    private final byte separator;
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+    private int length = 0;
+    private boolean overflow = false;
+
+    private long lineCount = 0;
+    private long errorCount = 0;
+
+    /**
+     * TelemetryParser's constructor, with ',' as the CSV separator.
+     * @param snapshot TelemetrySnapshot - where the values are stored.
+     * @param format Format - the format of the lines.
+     */
+    public TelemetryParser(TelemetrySnapshot snapshot, Format format) {
+        this(snapshot, format, ',');
+    }
+
+    /**
+     * TelemetryParser's constructor.
+     * @param snapshot TelemetrySnapshot - where the values are stored.
+     * @param format Format - the format of the lines.
+     * @param separator char - the separator between the values of a CSV record.
+     */
+    public TelemetryParser(TelemetrySnapshot snapshot, Format format, char separator) {
+        this.snapshot = snapshot;
+        this.format = format;
+        this.separator = (byte) separator;
+    }
+
+    /**
+     * @return TelemetrySnapshot - the snapshot the values are stored in.
+     */
+    public TelemetrySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Parse all of the remaining bytes of given buffer. Every complete line updates the snapshot,
+     * and the bytes of an incomplete one are kept until the rest of it is fed.
+     * @param src ByteBuffer - the received bytes, its position is advanced to its limit.
+     */
+    public void feed(ByteBuffer src) {
+        if (src.hasArray()) {
+            byte[] array = src.array();
+            int end = src.arrayOffset() + src.limit();
+            for (int i = src.arrayOffset() + src.position(); i < end; i++) {
+                feed(array[i]);
+            }
+            src.position(src.limit());
+        } else {
+            while (src.hasRemaining()) {
+                feed(src.get());
+            }
+        }
+    }
+
+    /**
+     * Drop the bytes of an incomplete line, e.g. after the connection was lost in the middle of it.
+     */
+    public void reset() {
+        length = 0;
+        overflow = false;
+    }
+
+    /**
+     * @return long - the number of complete lines parsed so far.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return long - the number of lines which couldn't be parsed.
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    private void feed(byte b) {
+        if (b == '\n') {
+            if (overflow) {
+                errorCount++;
+            } else if (length > 0) {
+                lineCount++;
+                if (!(format == Format.CSV ? parseRecord() : parseProperty())) {
+                    errorCount++;
+                }
+            }
+            reset();
+        } else if (b != '\r') {
+            if (length < line.length) {
+                line[length++] = b;
+            } else {
+                overflow = true;
+            }
+        }
+    }
+
+    /**
+     * Parse a "&lt;path&gt; = '&lt;value&gt;' (&lt;type&gt;)" line. Anything before the path
+     * (like the property server's "/&gt; " prompt) is skipped.
+     * @return boolean - false if the line isn't a property response.
+     */
+    private boolean parseProperty() {
+        int equals = indexOf(0, '=');
+        if (equals < 1 || equals + 2 >= length
+                || line[equals - 1] != ' ' || line[equals + 1] != ' ' || line[equals + 2] != '\'') {
+            return false;
+        }
+        int pathEnd = equals - 1;
+        int pathStart = pathEnd;
+        while (pathStart > 0 && line[pathStart - 1] != ' ') {
+            pathStart--;
+        }
+        int valueStart = equals + 3;
+        int valueEnd = indexOf(valueStart, '\'');
+        if (valueEnd < 0) {
+            return false;
+        }
+        int index = snapshot.indexOf(line, pathStart, pathEnd);
+        if (index < 0) {
+            return true; // Not one of ours.
+        }
+        double value = parseValue(line, valueStart, valueEnd);
+        if (Double.isNaN(value)) {
+            return false;
+        }
+        snapshot.set(index, value, System.nanoTime());
+        snapshot.publish();
+        return true;
+    }
+
+    /**
+     * Parse a record of separated values, one for each of the snapshot's properties.
+     * @return boolean - false if a value couldn't be parsed or values are missing.
+     */
+    private boolean parseRecord() {
+        long now = System.nanoTime();
+        int start = 0;
+        int index = 0;
+        boolean valid = true;
+        while (index < snapshot.size() && start <= length) {
+            int end = indexOf(start, separator);
+            if (end < 0) {
+                end = length;
+            }
+            double value = parseValue(line, start, end);
+            if (Double.isNaN(value)) {
+                valid = false;
+            } else {
+                snapshot.set(index, value, now);
+            }
+            index++;
+            start = end + 1;
+        }
+        snapshot.publish();
+        return valid && index == snapshot.size();
+    }
+
+    private int indexOf(int from, int b) {
+        for (int i = from; i < length; i++) {
+            if (line[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a number (or "true"/"false", as 1 and 0) from given bytes, without creating a String.
+     * Surrounding spaces are ignored. Values with more than MAX_DIGITS significant digits are
+     * truncated to MAX_DIGITS digits.
+     * @param buffer byte[] - the bytes.
+     * @param start int - the first byte of the value.
+     * @param end int - the byte after the value.
+     * @return double - the value, or NaN if it isn't a number.
+     */
+    static double parseValue(byte[] buffer, int start, int end) {
+        while (start < end && buffer[start] == ' ') {
+            start++;
+        }
+        while (end > start && buffer[end - 1] == ' ') {
+            end--;
+        }
+        if (matches(buffer, start, end, "true")) {
+            return 1;
+        }
+        if (matches(buffer, start, end, "false")) {
+            return 0;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; i < end && isDigit(buffer[i]); i++) {
+            anyDigit = true;
+            if (digits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + (buffer[i] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+        }
+        if (i < end && buffer[i] == '.') {
+            for (i++; i < end && isDigit(buffer[i]); i++) {
+                anyDigit = true;
+                if (digits < MAX_DIGITS) {
+                    mantissa = mantissa * 10 + (buffer[i] - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                }
+            }
+        }
+        if (!anyDigit) {
+            return Double.NaN;
+        }
+        if (i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negativeExponent = buffer[i] == '-';
+                i++;
+            }
+            int explicit = 0;
+            boolean exponentDigit = false;
+            for (; i < end && isDigit(buffer[i]); i++) {
+                exponentDigit = true;
+                if (explicit < 1000) {
+                    explicit = explicit * 10 + (buffer[i] - '0');
+                }
+            }
+            if (!exponentDigit) {
+                return Double.NaN;
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        double value = mantissa;
+        if (exponent < 0) {
+            value = -exponent < POWERS_OF_TEN.length
+                    ? value / POWERS_OF_TEN[-exponent] : value / Math.pow(10, -exponent);
+        } else if (exponent > 0) {
+            value = exponent < POWERS_OF_TEN.length
+                    ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean matches(byte[] buffer, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (buffer[start + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads whatever the server sends back over a connected Transport and feeds it to a
+ * TelemetryParser, until the connection is closed or the receiver is stopped.
+ * Started by the ConnectionEngine on a thread of its own for every connection, so receiving
+ * never holds back the commands being sent. A failed read only ends the receiver - losing the
+ * connection is handled by the engine's writing side.
+ */
+class TelemetryReceiver implements Runnable {
+
+    // The size of the buffer received bytes are read into.
+    static final int BUFFER_SIZE = 4096;
+
+    private final Transport transport;
+    private final TelemetryParser parser;
+    private final ByteBuffer buffer;
+    private volatile boolean stopped = false;
+
+    /**
+     * TelemetryReceiver's constructor.
+     * @param transport Transport - the connected transport.
+     * @param parser TelemetryParser - the parser fed with the received bytes.
+     * @param buffer ByteBuffer - the buffer to read into, reused for every connection once the
+     *               previous receiver ended.
+     */
+    TelemetryReceiver(Transport transport, TelemetryParser parser, ByteBuffer buffer) {
+        this.transport = transport;
+        this.parser = parser;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Stop receiving. Call before closing the transport, so the receiver doesn't read from the next
+     * connection.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Read and parse until stopped or the connection ends. The parser is shared by the receivers
+     * of every connection, so it's only reset and fed while holding it, and never once stopped -
+     * a receiver the engine gave up waiting for can't touch it after the next one started.
+     */
+    @Override
+    public void run() {
+        synchronized (parser) {
+            if (stopped) {
+                return;
+            }
+            parser.reset();
+        }
+        buffer.clear();
+        try {
+            while (!stopped && transport.read(buffer) >= 0) {
+                buffer.flip();
+                synchronized (parser) {
+                    if (!stopped) {
+                        parser.feed(buffer);
+                    }
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            // The connection was lost - the engine reconnects or reports it.
+        }
+    }
+}
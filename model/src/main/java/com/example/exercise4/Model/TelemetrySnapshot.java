@@ -0,0 +1,179 @@
+package com.example.exercise4.Model;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The latest received value of every telemetry property (altitude, airspeed, heading...).
+ * The properties are given once, on construction, and every value is kept as the raw bits of a
+ * double in an AtomicLongArray, so the receiving thread updates it and any other thread polls it
+ * without locks. Listeners subscribed to the snapshot are called on the receiving thread after
+ * every update.
+ */
+public class TelemetrySnapshot {
+
+    /**
+     * Gets notified whenever the snapshot was updated. Called on the receiving thread, so it
+     * should only read what it needs and return.
+     */
+    public interface Listener {
+        void onTelemetry(TelemetrySnapshot snapshot);
+    }
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final Listener[] NO_LISTENERS = new Listener[0];
+
+    private final String[] paths;
+    // The ASCII bytes of each path without its leading '/', for matching received lines.
+    private final byte[][] pathBytes;
+    private final AtomicLongArray values;
+    private final AtomicLongArray updateTimes;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Listener[] listeners = NO_LISTENERS;
+
+    /**
+     * TelemetrySnapshot's constructor. Every value is NaN until received.
+     * @param paths String[] - the property paths, e.g. "/position/altitude-ft".
+     */
+    public TelemetrySnapshot(String... paths) {
+        this.paths = paths.clone();
+        this.pathBytes = new byte[paths.length][];
+        this.values = new AtomicLongArray(paths.length);
+        this.updateTimes = new AtomicLongArray(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            String path = paths[i].startsWith("/") ? paths[i].substring(1) : paths[i];
+            pathBytes[i] = path.getBytes(ASCII);
+            values.set(i, Double.doubleToRawLongBits(Double.NaN));
+        }
+    }
+
+    /**
+     * @return int - the number of properties.
+     */
+    public int size() {
+        return paths.length;
+    }
+
+    /**
+     * @param index int - the property's index.
+     * @return String - the property's path, as given on construction.
+     */
+    public String getPath(int index) {
+        return paths[index];
+    }
+
+    /**
+     * @param path String - a property path, with or without a leading '/'.
+     * @return int - the property's index, or -1 if it isn't part of the snapshot.
+     */
+    public int indexOf(String path) {
+        String stripped = path.startsWith("/") ? path.substring(1) : path;
+        for (int i = 0; i < paths.length; i++) {
+            if (stripped.equals(new String(pathBytes[i], ASCII))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the property whose path equals given bytes, ignoring a leading '/'. Doesn't allocate.
+     * @param buffer byte[] - the bytes.
+     * @param start int - the first byte of the path.
+     * @param end int - the byte after the path.
+     * @return int - the property's index, or -1 if none matches.
+     */
+    int indexOf(byte[] buffer, int start, int end) {
+        if (start < end && buffer[start] == '/') {
+            start++;
+        }
+        int length = end - start;
+        for (int i = 0; i < pathBytes.length; i++) {
+            byte[] path = pathBytes[i];
+            if (path.length != length) {
+                continue;
+            }
+            int j = 0;
+            while (j < length && path[j] == buffer[start + j]) {
+                j++;
+            }
+            if (j == length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index int - the property's index.
+     * @return double - the property's latest value, or NaN if none was received.
+     */
+    public double get(int index) {
+        return Double.longBitsToDouble(values.get(index));
+    }
+
+    /**
+     * @param index int - the property's index.
+     * @return long - System.nanoTime() when the property was last updated, or 0 if never.
+     */
+    public long getUpdateTime(int index) {
+        return updateTimes.get(index);
+    }
+
+    /**
+     * @return long - the number of updates (lines or records) applied so far. Lets pollers tell
+     *         whether anything changed since they last looked.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Set the value of a single property. Called by the receiving thread.
+     * @param index int - the property's index.
+     * @param value double - the value.
+     * @param now long - System.nanoTime() of the update.
+     */
+    void set(int index, double value, long now) {
+        values.set(index, Double.doubleToRawLongBits(value));
+        updateTimes.set(index, now);
+    }
+
+    /**
+     * Mark the end of an update, and notify the listeners. Called by the receiving thread.
+     */
+    void publish() {
+        version.incrementAndGet();
+        for (Listener listener : listeners) {
+            listener.onTelemetry(this);
+        }
+    }
+
+    /**
+     * Subscribe given listener to the snapshot's updates.
+     * @param listener Listener
+     */
+    public synchronized void addListener(Listener listener) {
+        Listener[] grown = new Listener[listeners.length + 1];
+        System.arraycopy(listeners, 0, grown, 0, listeners.length);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Unsubscribe given listener from the snapshot's updates.
+     * @param listener Listener
+     */
+    public synchronized void removeListener(Listener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                Listener[] shrunk = new Listener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, listeners.length - i - 1);
+                listeners = shrunk;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A connection to the server which frames of encoded commands are written to.
+ * Used by the ConnectionEngine's thread: connect is called once, then write for every frame,
+ * and close when disconnecting. isWritable may be called from any thread, and read from a single
+ * receiving thread while the engine writes.
+ * After close, connect may be called again to reconnect with a new connection.
+ */
+public interface Transport {
+
+    /**
+     * Connect to the server, waiting until connected or until the transport's timeout passed.
+     * @throws IOException if the connection failed or timed out.
+     */
+    void connect() throws IOException;
+
+    /**
+     * Write all of the remaining bytes of given frame to the server.
+     * @param frame ByteBuffer - the frame, its position is advanced to its limit.
+     * @throws IOException if the write failed.
+     */
+    void write(ByteBuffer frame) throws IOException;
+
+    /**
+     * Read the bytes the server sent, waiting until at least one byte arrived.
+     * @param dst ByteBuffer - the buffer to read into, its position is advanced past the bytes
+     *            read.
+     * @return int - the number of bytes read, or -1 if the connection was closed.
+     * @throws IOException if the read failed.
+     */
+    int read(ByteBuffer dst) throws IOException;
+
+    /**
+     * Tells whether a write would currently go through without waiting for the server, so
+     * producers can hold back new commands instead of queueing them while the connection is busy.
+     * @return boolean - true if connected and not waiting on a previous write.
+     */
+    boolean isWritable();
+
+    /**
+     * Close the connection.
+     * @throws IOException if closing failed.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,102 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Receives the output of a FlightGear generic protocol sent over UDP to a port of its own (for
+ * example "--generic=socket,out,30,&lt;phone ip&gt;,5500,udp,exercise4_telemetry", see
+ * the app's assets/protocol), and parses every datagram into the parser's TelemetrySnapshot on a
+ * thread of its own. Every datagram is read into the same buffer, so receiving doesn't allocate.
+ */
+public class UdpTelemetryReceiver implements Runnable {
+
+    // The size of the largest datagram received.
+    public static final int MAX_DATAGRAM_SIZE = 2048;
+
+    private final int port;
+    private final TelemetryParser parser;
+    private final ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+    private volatile DatagramChannel channel;
+    private volatile IOException exception;
+
+    /**
+     * UdpTelemetryReceiver's constructor.
+     * @param port int - the local port to receive on.
+     * @param parser TelemetryParser - the parser, usually with Format.CSV.
+     */
+    public UdpTelemetryReceiver(int port, TelemetryParser parser) {
+        this.port = port;
+        this.parser = parser;
+    }
+
+    /**
+     * Bind the port and start receiving on a new daemon thread.
+     * @throws IOException if the port couldn't be bound.
+     */
+    public void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.socket().bind(new InetSocketAddress(port));
+        Thread thread = new Thread(this, "UdpTelemetryReceiver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return int - the bound local port (useful when constructed with port 0), or -1 if not
+     *         started.
+     */
+    public int getLocalPort() {
+        DatagramChannel current = channel;
+        return current == null ? -1 : current.socket().getLocalPort();
+    }
+
+    /**
+     * @return TelemetrySnapshot - the snapshot the values are stored in.
+     */
+    public TelemetrySnapshot getSnapshot() {
+        return parser.getSnapshot();
+    }
+
+    /**
+     * @return IOException - the exception which stopped receiving, or null.
+     */
+    public IOException getException() {
+        return exception;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                parser.feed(buffer);
+                // Every datagram holds whole records.
+                parser.reset();
+            }
+        } catch (ClosedChannelException e) {
+            // Closed.
+        } catch (IOException e) {
+            exception = e;
+        }
+    }
+
+    /**
+     * Stop receiving and release the port.
+     */
+    public void close() {
+        DatagramChannel current = channel;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.exercise4.Model;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * A Transport sending datagrams over a connected java.nio DatagramChannel. Every frame is cut into
+ * datagrams of a fixed size, so several queued records never end up in a single datagram.
+ * There is no handshake, so connecting only resolves the address, and a lost datagram never holds
+ * back the ones after it. Nothing is ever read back - telemetry arrives on an
+ * UdpTelemetryReceiver.
+ */
+public class UdpTransport implements Transport {
+
+    private final String host;
+    private final int port;
+    private final int datagramSize;
+    // Resolved ahead of time, or null to resolve the host when connecting.
+    private final InetSocketAddress address;
+    private DatagramChannel channel;
+    private volatile boolean open = false;
+
+    /**
+     * UdpTransport's constructor. The host is only resolved when connecting.
+     * @param host String - the server's ip address or host name.
+     * @param port int - the server's port number.
+     * @param datagramSize int - the size of every datagram, e.g. ControlDatagram.size().
+     */
+    public UdpTransport(String host, int port, int datagramSize) {
+        this(host, port, null, datagramSize);
+    }
+
+    /**
+     * UdpTransport's constructor, sending to an address resolved ahead of time (e.g. by an
+     * EndpointResolver), so connecting doesn't look the host up again.
+     * @param address InetSocketAddress - the server's resolved address.
+     * @param datagramSize int - the size of every datagram, e.g. ControlDatagram.size().
+     */
+    public UdpTransport(InetSocketAddress address, int datagramSize) {
+        this(EndpointResolver.hostOf(address), address.getPort(), address, datagramSize);
+    }
+
+    private UdpTransport(String host, int port, InetSocketAddress address, int datagramSize) {
+        if (datagramSize <= 0) {
+            throw new IllegalArgumentException("datagramSize must be positive.");
+        }
+        this.host = host;
+        this.port = port;
+        this.address = address;
+        this.datagramSize = datagramSize;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        channel = DatagramChannel.open();
+        channel.connect(address != null ? address : new InetSocketAddress(host, port));
+        open = true;
+    }
+
+    @Override
+    public void write(ByteBuffer frame) throws IOException {
+        int limit = frame.limit();
+        try {
+            while (frame.hasRemaining()) {
+                frame.limit(Math.min(limit, frame.position() + datagramSize));
+                channel.write(frame);
+                frame.limit(limit);
+            }
+        } finally {
+            frame.limit(limit);
+        }
+    }
+
+    /**
+     * Nothing is read over UDP.
+     * @param dst ByteBuffer - NOT USED
+     * @return int - always -1.
+     */
+    @Override
+    public int read(ByteBuffer dst) {
+        return -1;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.exercise4.Model;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit tests for CommandEncoder and the allocation free client write path it is used on.
+ */
+public class CommandEncoderTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    // The bytes the measured loop may allocate in total.
+    private static final long MAX_MEASURED_ALLOCATION = 1024;
+
+    private static String encode(CommandEncoder encoder, String path, double value) {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        encoder.encode(buffer, CommandEncoder.prefix(path), value);
+        return new String(buffer.array(), 0, buffer.position(), ASCII);
+    }
+
+    @Test
+    public void encode_writesFixedPrecision() {
+        CommandEncoder encoder = new CommandEncoder(4);
+        assertEquals("set controls/flight/aileron 0.2500\n\r",
+                encode(encoder, "controls/flight/aileron", 0.25));
+        assertEquals("set a -1.0000\n\r", encode(encoder, "a", -1));
+        assertEquals("set a 0.0001\n\r", encode(encoder, "a", 0.00005));
+        assertEquals("set a 123.4568\n\r", encode(encoder, "a", 123.45678));
+    }
+
+    @Test
+    public void encode_negativeZeroHasNoSign() {
+        CommandEncoder encoder = new CommandEncoder(2);
+        assertEquals("set a 0.00\n\r", encode(encoder, "a", -0.001));
+        assertEquals("set a 0\n\r", encode(new CommandEncoder(0), "a", -0.4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encode_rejectsNaN() {
+        encode(new CommandEncoder(), "a", Double.NaN);
+    }
+
+    /**
+     * Takes every frame written to it and does nothing with it.
+     */
+    private static class NullTransport implements Transport {
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void write(ByteBuffer frame) {
+            frame.position(frame.limit());
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            return -1;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void clientWritePath_doesNotAllocateInSteadyState() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        // The JIT could optimize away allocations ART (which has no escape analysis) still makes,
+        // so only measured where it can't - the build runs the tests that way.
+        assumeTrue(escapeAnalysisDisabled());
+
+        // Through the whole write path (encoding, the client's lock, the send metrics and the
+        // queue), with either kind of queue.
+        for (boolean coalescing : new boolean[] {false, true}) {
+            FlightGearClient client = new FlightGearClient(new NullTransport(), coalescing);
+            client.connect();
+            try {
+                int iterations = 100000;
+                // Warm up, so slots are created and the code is compiled.
+                sendCommands(client, iterations);
+
+                long threadId = Thread.currentThread().getId();
+                long before = threads.getThreadAllocatedBytes(threadId);
+                sendCommands(client, iterations);
+                long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+                // A constant bound, whatever the number of commands - only measuring noise fits
+                // in it.
+                assertTrue("Allocated " + allocated + " bytes for " + iterations * 3
+                                + " commands on " + client.getCommandQueue().getClass()
+                                .getSimpleName(),
+                        allocated < MAX_MEASURED_ALLOCATION);
+            } finally {
+                client.disconnect();
+            }
+        }
+    }
+
+    private static boolean escapeAnalysisDisabled() {
+        if (System.getProperty("java.vm.info", "").contains("interpreted mode")) {
+            return true;
+        }
+        try {
+            HotSpotDiagnosticMXBean diagnostics =
+                    ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return diagnostics != null
+                    && "false".equals(diagnostics.getVMOption("DoEscapeAnalysis").getValue());
+        } catch (IllegalArgumentException e) {
+            return false; // Not a HotSpot JVM with a JIT.
+        }
+    }
+
+    private static void sendCommands(FlightGearClient client, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            double value = (i % 200 - 100) / 100.0;
+            client.setAileron(value);
+            client.setControls(value, -value);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs a ConnectionEngine against a loopback server socket, on the JVM.
+ */
+public class ConnectionEngineTest {
+
+    /**
+     * Records every state and exception reported by an engine.
+     */
+    private static class RecordingListener implements ConnectionEngine.Listener {
+        final List<ConnectionEngine.State> states =
+                Collections.synchronizedList(new ArrayList<ConnectionEngine.State>());
+        final List<Exception> exceptions =
+                Collections.synchronizedList(new ArrayList<Exception>());
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void onStateChanged(ConnectionEngine.State state) {
+            states.add(state);
+            if (state == ConnectionEngine.State.CLOSED) {
+                closed.countDown();
+            }
+        }
+
+        @Override
+        public void onException(Exception e) {
+            exceptions.add(e);
+        }
+    }
+
+    private static ByteBuffer ascii(String command) {
+        return ByteBuffer.wrap(command.getBytes());
+    }
+
+    @Test
+    public void engine_sendsQueuedCommandsAndDrainsOnDisconnect() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            CommandQueue queue = new FifoCommandQueue();
+            ConnectionEngine engine = new ConnectionEngine(
+                    new SocketTransport("127.0.0.1", server.getLocalPort(), 3000), queue);
+            RecordingListener listener = new RecordingListener();
+            engine.setListener(listener);
+
+            queue.put(null, ascii("first\n"));
+            engine.start();
+            Socket socket = server.accept();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            assertEquals("first", in.readLine());
+
+            queue.put(null, ascii("last\n"));
+            engine.disconnect(true);
+            assertEquals("last", in.readLine());
+            assertNull(in.readLine());
+
+            assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+            assertEquals(ConnectionEngine.State.CLOSED, engine.getState());
+            assertTrue(listener.exceptions.isEmpty());
+            assertEquals(ConnectionEngine.State.CONNECTING, listener.states.get(0));
+            assertEquals(ConnectionEngine.State.CONNECTED, listener.states.get(1));
+            assertEquals(ConnectionEngine.State.DRAINING, listener.states.get(2));
+            LinkStats linkStats = engine.getLinkStats();
+            assertTrue(linkStats.getConnectNanos() >= 0);
+            assertTrue(linkStats.getFirstCommandNanos() >= linkStats.getConnectNanos());
+            socket.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void engine_reportsConnectFailure() throws Exception {
+        // Take a free port, and close it so nothing listens on it.
+        ServerSocket server = new ServerSocket(0);
+        int port = server.getLocalPort();
+        server.close();
+
+        ConnectionEngine engine = new ConnectionEngine(
+                new NioTransport("127.0.0.1", port), new CoalescingCommandQueue());
+        RecordingListener listener = new RecordingListener();
+        engine.setListener(listener);
+        engine.start();
+
+        assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, listener.exceptions.size());
+        assertTrue(listener.exceptions.get(0) instanceof IOException);
+    }
+
+    @Test
+    public void engine_reconnectsAndResyncsAfterLosingConnection() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            final CommandQueue queue = new CoalescingCommandQueue();
+            ConnectionEngine engine = new ConnectionEngine(
+                    new SocketTransport("127.0.0.1", server.getLocalPort(), 3000), queue);
+            engine.setReconnectPolicy(new ReconnectPolicy(10, 50, 2.0, 0.5, 0));
+            engine.setResyncSource(new ConnectionEngine.ResyncSource() {
+                @Override
+                public void resync(CommandQueue resyncQueue) {
+                    resyncQueue.put("state", ascii("resync\n"));
+                }
+            });
+            RecordingListener listener = new RecordingListener();
+            engine.setListener(listener);
+            engine.start();
+
+            Socket first = server.accept();
+            first.close();
+            // Keep writing until the engine notices the connection is gone and comes back.
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        queue.put("stick", ascii("move\n"));
+                        try {
+                            Thread.sleep(5);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+            writer.start();
+            server.setSoTimeout(5000);
+            Socket second = server.accept();
+            writer.interrupt();
+            writer.join();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(second.getInputStream()));
+            boolean resynced = false;
+            for (int i = 0; i < 3 && !resynced; i++) {
+                resynced = "resync".equals(in.readLine());
+            }
+            assertTrue(resynced);
+            assertEquals(1, engine.getLinkStats().getReconnectCount());
+            assertTrue(listener.states.contains(ConnectionEngine.State.RECONNECTING));
+            assertTrue(listener.exceptions.isEmpty());
+
+            engine.disconnect(false);
+            assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+            second.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void engine_restartsTelemetryCleanlyAfterReconnecting() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            final CommandQueue queue = new CoalescingCommandQueue();
+            ConnectionEngine engine = new ConnectionEngine(
+                    new SocketTransport("127.0.0.1", server.getLocalPort(), 3000), queue);
+            engine.setReconnectPolicy(new ReconnectPolicy(10, 50, 2.0, 0.5, 0));
+            TelemetrySnapshot snapshot = new TelemetrySnapshot("/position/altitude-ft");
+            TelemetryParser parser =
+                    new TelemetryParser(snapshot, TelemetryParser.Format.PROPERTY);
+            engine.setTelemetryParser(parser);
+            RecordingListener listener = new RecordingListener();
+            engine.setListener(listener);
+            engine.start();
+
+            // The first connection is lost in the middle of a response.
+            Socket first = server.accept();
+            first.getOutputStream().write("/position/altitude-ft = '1".getBytes());
+            first.getOutputStream().flush();
+            Thread.sleep(50);
+            first.close();
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        queue.put("stick", ascii("move\n"));
+                        try {
+                            Thread.sleep(5);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+            writer.start();
+            server.setSoTimeout(5000);
+            Socket second = server.accept();
+            writer.interrupt();
+            writer.join();
+
+            second.getOutputStream().write("/position/altitude-ft = '200' (double)\r\n".getBytes());
+            second.getOutputStream().flush();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (snapshot.getVersion() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            // The new receiver started from a reset parser, not the lost connection's half line.
+            assertEquals(200, snapshot.get(0), 0);
+            assertEquals(0, parser.getErrorCount());
+
+            engine.disconnect(false);
+            assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+            second.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void engine_cannotStartTwice() {
+        ConnectionEngine engine = new ConnectionEngine(
+                new SocketTransport("127.0.0.1", 1, 10), new FifoCommandQueue());
+        engine.disconnect(false);
+        engine.start();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit tests for ControlDatagram, checked against the generic protocol FlightGear reads it with.
+ */
+public class ControlDatagramTest {
+
+    // Where the app ships the protocol, from the model module or from the project's root.
+    private static final String[] PROTOCOL_FILES = {
+            "../app/src/main/assets/protocol/exercise4_controls.xml",
+            "app/src/main/assets/protocol/exercise4_controls.xml"};
+
+    @Test
+    public void encode_writesSequenceThenEachAxisBigEndian() {
+        ControlDatagram datagram = FlightGearClient.CONTROL_DATAGRAM;
+        assertEquals(4, datagram.getAxisCount());
+        assertEquals(4 + 4 * 4, datagram.size());
+        assertEquals(0, datagram.indexOf(FlightGearClient.AILERON));
+        assertEquals(1, datagram.indexOf(FlightGearClient.ELEVATOR));
+        assertEquals(2, datagram.indexOf(FlightGearClient.RUDDER));
+        assertEquals(3, datagram.indexOf(FlightGearClient.THROTTLE));
+        assertEquals(-1, datagram.indexOf(FlightGearClient.FLAPS));
+
+        ByteBuffer buffer = ByteBuffer.allocate(datagram.size());
+        datagram.encode(buffer, 0x01020304, new double[] {0.5, -0.25, 1, 0.75});
+        assertFalse(buffer.hasRemaining());
+        byte[] bytes = buffer.array();
+        // Network byte order: the most significant byte first.
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, new byte[] {bytes[0], bytes[1], bytes[2],
+                bytes[3]});
+        // 0.5f is 0x3F000000.
+        assertArrayEquals(new byte[] {0x3F, 0, 0, 0}, new byte[] {bytes[4], bytes[5], bytes[6],
+                bytes[7]});
+
+        ByteBuffer read = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+        assertEquals(0x01020304, read.getInt());
+        assertEquals(0.5f, read.getFloat(), 0);
+        assertEquals(-0.25f, read.getFloat(), 0);
+        assertEquals(1f, read.getFloat(), 0);
+        assertEquals(0.75f, read.getFloat(), 0);
+    }
+
+    @Test
+    public void layout_matchesTheShippedProtocol() throws Exception {
+        File file = null;
+        for (String path : PROTOCOL_FILES) {
+            if (new File(path).isFile()) {
+                file = new File(path);
+            }
+        }
+        assumeTrue(file != null);
+        Document protocol = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        Element input = (Element) protocol.getElementsByTagName("input").item(0);
+        assertEquals("true", text(input, "binary_mode"));
+        assertEquals("network", text(input, "byte_order"));
+
+        NodeList chunks = input.getElementsByTagName("chunk");
+        ControlDatagram datagram = FlightGearClient.CONTROL_DATAGRAM;
+        assertEquals(1 + datagram.getAxisCount(), chunks.getLength());
+        assertEquals("int", text((Element) chunks.item(0), "type"));
+        String[] axes = {FlightGearClient.AILERON, FlightGearClient.ELEVATOR,
+                FlightGearClient.RUDDER, FlightGearClient.THROTTLE};
+        for (int i = 0; i < axes.length; i++) {
+            Element chunk = (Element) chunks.item(i + 1);
+            assertEquals("float", text(chunk, "type"));
+            assertEquals("/" + axes[i], text(chunk, "node"));
+            assertEquals(i, datagram.indexOf(axes[i]));
+        }
+    }
+
+    private static String text(Element parent, String tag) {
+        return parent.getElementsByTagName(tag).item(0).getTextContent().trim();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for EndpointResolver, with the DNS replaced by a fixed table.
+ */
+public class EndpointResolverTest {
+
+    /**
+     * Knows "sim" and every ip address, and fails any other host.
+     */
+    private static class FixedResolver extends EndpointResolver {
+        FixedResolver(long ttl) {
+            super(ttl);
+        }
+
+        @Override
+        protected InetAddress lookup(String host) throws UnknownHostException {
+            if (host.equalsIgnoreCase("sim")) {
+                return InetAddress.getByAddress(host, new byte[] {10, 0, 0, 7});
+            }
+            if (Character.isDigit(host.charAt(0))) {
+                return InetAddress.getByName(host);
+            }
+            throw new UnknownHostException(host);
+        }
+    }
+
+    @Test
+    public void resolve_cachesUntilTheTtlPasses() throws Exception {
+        EndpointResolver resolver = new FixedResolver(60000);
+        InetSocketAddress address = resolver.resolve("sim", 5400);
+        assertFalse(address.isUnresolved());
+        assertEquals("10.0.0.7", address.getAddress().getHostAddress());
+        assertEquals(5400, address.getPort());
+        assertEquals(5401, resolver.resolve("SIM", 5401).getPort());
+        assertEquals(1, resolver.getLookupCount());
+
+        resolver.invalidate("sim");
+        resolver.resolve("sim", 5400);
+        assertEquals(2, resolver.getLookupCount());
+
+        EndpointResolver uncached = new FixedResolver(0);
+        uncached.resolve("sim", 5400);
+        uncached.resolve("sim", 5400);
+        assertEquals(2, uncached.getLookupCount());
+    }
+
+    @Test
+    public void resolve_reportsResultsInOrderOrTheFirstFailure() throws Exception {
+        EndpointResolver resolver = new FixedResolver(60000);
+        final AtomicReference<InetSocketAddress[]> resolved = new AtomicReference<>();
+        final AtomicReference<String> failed = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        EndpointResolver.Callback callback = new EndpointResolver.Callback() {
+            @Override
+            public void onResolved(InetSocketAddress[] addresses) {
+                resolved.set(addresses);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailed(String host, Exception e) {
+                failed.set(host);
+                done.countDown();
+            }
+        };
+        resolver.resolve(new String[] {"sim", "127.0.0.1"}, new int[] {5400, 5401}, callback);
+        resolver.resolve(new String[] {"sim", "nowhere"}, new int[] {5400, 5401}, callback);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        resolver.shutdown();
+
+        assertEquals(2, resolved.get().length);
+        assertEquals("10.0.0.7", resolved.get()[0].getAddress().getHostAddress());
+        assertEquals(5401, resolved.get()[1].getPort());
+        assertEquals("nowhere", failed.get());
+    }
+
+    @Test
+    public void resolve_reportsAPortOutOfRange() throws Exception {
+        EndpointResolver resolver = new FixedResolver(60000);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        resolver.resolve(new String[] {"sim"}, new int[] {70000}, new EndpointResolver.Callback() {
+            @Override
+            public void onResolved(InetSocketAddress[] addresses) {
+                done.countDown();
+            }
+
+            @Override
+            public void onFailed(String host, Exception e) {
+                failure.set(e);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        resolver.shutdown();
+        assertTrue(failure.get() instanceof IllegalArgumentException);
+        assertEquals(0, resolver.getLookupCount());
+
+        try {
+            resolver.resolve("sim", -1);
+            fail("A negative port was resolved.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            resolver.resolve("sim", 0);
+            fail("Port 0 was resolved.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
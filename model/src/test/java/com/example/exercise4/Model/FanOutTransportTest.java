@@ -0,0 +1,153 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fans frames out to loopback server sockets, on the JVM.
+ */
+public class FanOutTransportTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    /**
+     * Counts the bytes read from an accepted socket, on a thread of its own.
+     */
+    private static AtomicLong countReceived(final Socket socket) {
+        final AtomicLong received = new AtomicLong();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[ConnectionEngine.FRAME_SIZE];
+                try {
+                    InputStream in = socket.getInputStream();
+                    int count;
+                    while ((count = in.read(buffer)) >= 0) {
+                        received.addAndGet(count);
+                    }
+                } catch (IOException e) {
+                    // Closed by the test.
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return received;
+    }
+
+    private static ByteBuffer frame(int length) {
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        while (frame.hasRemaining()) {
+            frame.put((byte) 'x');
+        }
+        frame.flip();
+        return frame;
+    }
+
+    private static int unusedPort() throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        int port = server.getLocalPort();
+        server.close();
+        return port;
+    }
+
+    @Test
+    public void write_stalledEndpointDoesNotHoldBackOthers() throws Exception {
+        ServerSocket fastServer = new ServerSocket(0);
+        ServerSocket stalledServer = new ServerSocket(0);
+        FanOutTransport transport = new FanOutTransport(
+                new String[] {HOST, HOST},
+                new int[] {fastServer.getLocalPort(), stalledServer.getLocalPort()});
+        try {
+            transport.connect();
+            Socket fastSocket = fastServer.accept();
+            Socket stalledSocket = stalledServer.accept(); // Never read from.
+            AtomicLong received = countReceived(fastSocket);
+            FanOutTransport.Endpoint fast = transport.getEndpoints()[0];
+            FanOutTransport.Endpoint stalled = transport.getEndpoints()[1];
+
+            // Fill the stalled endpoint's socket and backlog until it drops frames.
+            ByteBuffer frame = frame(1000);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (stalled.getFramesDropped() == 0) {
+                assertTrue("The stalled endpoint never filled",
+                        System.currentTimeMillis() < deadline);
+                frame.rewind();
+                transport.write(frame);
+                assertFalse(frame.hasRemaining());
+            }
+            assertEquals(FanOutTransport.Health.LAGGING, stalled.getHealth());
+
+            // The fast endpoint keeps up with every frame after it.
+            for (int i = 0; i < 100; i++) {
+                frame.rewind();
+                transport.write(frame);
+                while (received.get() < fast.getBytesSent() || fast.getBacklogBytes() > 0) {
+                    assertTrue("The fast endpoint was held back",
+                            System.currentTimeMillis() < deadline);
+                    Thread.sleep(1);
+                    if (fast.getBacklogBytes() > 0) {
+                        frame.rewind();
+                        transport.write(frame);
+                    }
+                }
+            }
+            assertEquals(FanOutTransport.Health.HEALTHY, fast.getHealth());
+            assertTrue(stalled.getFramesDropped() > 0);
+            assertTrue(transport.isWritable());
+            fastSocket.close();
+            stalledSocket.close();
+        } finally {
+            transport.close();
+            fastServer.close();
+            stalledServer.close();
+        }
+    }
+
+    @Test
+    public void connect_unreachableEndpointIsRetriedInBackground() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        FanOutTransport transport = new FanOutTransport(
+                new String[] {HOST, HOST}, new int[] {server.getLocalPort(), unusedPort()});
+        transport.setReconnectPolicy(new ReconnectPolicy(10, 10, 1.0, 0, 2));
+        try {
+            transport.connect();
+            Socket socket = server.accept();
+            AtomicLong received = countReceived(socket);
+            FanOutTransport.Endpoint unreachable = transport.getEndpoints()[1];
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (unreachable.getHealth() != FanOutTransport.Health.FAILED) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+            ByteBuffer frame = frame(100);
+            transport.write(frame);
+            while (received.get() < 100) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+            assertEquals(100, transport.getEndpoints()[0].getBytesSent());
+            assertEquals(0, unreachable.getBytesSent());
+            socket.close();
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void connect_failsWhenNoEndpointIsReachable() throws Exception {
+        FanOutTransport transport = new FanOutTransport(
+                new String[] {HOST, HOST}, new int[] {unusedPort(), unusedPort()});
+        transport.connect();
+    }
+}
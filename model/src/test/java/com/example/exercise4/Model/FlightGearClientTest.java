@@ -0,0 +1,209 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs a FlightGearClient over an in-memory transport, or over UDP to a loopback socket, on the
+ * JVM.
+ */
+public class FlightGearClientTest {
+
+    /**
+     * Keeps every frame written to it, and fails every connect and write while down.
+     */
+    private static class OutageTransport implements Transport {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private volatile boolean down = false;
+
+        @Override
+        public void connect() throws IOException {
+            if (down) {
+                throw new IOException("Down.");
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer frame) throws IOException {
+            if (down) {
+                throw new IOException("Down.");
+            }
+            synchronized (written) {
+                written.write(frame.array(), frame.arrayOffset() + frame.position(),
+                        frame.remaining());
+            }
+            frame.position(frame.limit());
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            return -1;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return !down;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        String getWritten() {
+            synchronized (written) {
+                return written.toString();
+            }
+        }
+    }
+
+    /**
+     * Wait for the next datagram on given socket.
+     */
+    private static ByteBuffer receive(DatagramSocket socket) throws IOException {
+        byte[] data = new byte[1024];
+        DatagramPacket packet = new DatagramPacket(data, data.length);
+        socket.receive(packet);
+        return ByteBuffer.wrap(data, 0, packet.getLength());
+    }
+
+    @Test
+    public void client_keepsWritingThroughAnOutageAndResyncsAfterReconnecting() throws Exception {
+        final OutageTransport transport = new OutageTransport();
+        final FlightGearClient client = new FlightGearClient(transport, false);
+        client.setReconnectPolicy(new ReconnectPolicy(5, 20, 2.0, 0, 0));
+        client.connect();
+        client.setAileron(0.125);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!transport.getWritten().contains("0.125")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        transport.down = true;
+        final int count = RingCommandQueue.DEFAULT_CAPACITY * 4;
+        // Fills the ring while nothing drains it - must never wait for room.
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    client.setElevator(0.25);
+                    client.write(FlightGearClient.RUDDER, "set controls/flight/rudder 0\r\n");
+                }
+                client.setAileron(0.75);
+            }
+        });
+        producer.start();
+        producer.join(5000);
+        assertFalse("The producer waited for room", producer.isAlive());
+        long overflowed = ((RingCommandQueue) client.getCommandQueue()).getDroppedCount();
+        assertTrue(overflowed > 0);
+        assertTrue(client.getSendMetrics().getCommandsOverflowed() >= overflowed);
+
+        transport.down = false;
+        deadline = System.currentTimeMillis() + 5000;
+        while (!transport.getWritten().contains("aileron 0.75")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(transport.getWritten().contains("aileron 0.75"));
+        assertTrue(client.getLinkStats().getReconnectCount() >= 1);
+
+        // Still taking commands after reconnecting.
+        client.setAileron(-0.5);
+        deadline = System.currentTimeMillis() + 5000;
+        while (!transport.getWritten().contains("aileron -0.5")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(transport.getWritten().contains("aileron -0.5"));
+        client.disconnect();
+    }
+
+    @Test
+    public void set_rejectsPathOutsideDatagramBeforeRecordingOrChangingAnything()
+            throws Exception {
+        DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(5000);
+        File file = File.createTempFile("session", ".fgs");
+        file.deleteOnExit();
+        SessionRecorder recorder = new SessionRecorder(file);
+        FlightGearClient client = new FlightGearClient(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                FlightGearClient.CONTROL_DATAGRAM);
+        try {
+            client.setRecorder(recorder);
+            client.connect();
+            client.setControls(0.5, -0.5);
+            receive(server);
+            assertEquals(1, recorder.getRecordCount());
+
+            try {
+                client.set(new String[] {FlightGearClient.RUDDER, FlightGearClient.FLAPS},
+                        new double[] {0.25, 1});
+                fail("A path outside the datagram was accepted.");
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+            assertEquals(1, recorder.getRecordCount());
+
+            client.setAileron(0.125);
+            ByteBuffer datagram = receive(server);
+            datagram.getInt();
+            assertEquals(0.125f, datagram.getFloat(), 0);
+            assertEquals(-0.5f, datagram.getFloat(), 0);
+            // The rudder of the rejected call was never set.
+            assertEquals(0f, datagram.getFloat(), 0);
+        } finally {
+            client.disconnect();
+            recorder.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void udp_sendsOneDatagramPerUpdateWithIncreasingSequence() throws Exception {
+        DatagramSocket server = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(5000);
+        FlightGearClient client = new FlightGearClient(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                FlightGearClient.CONTROL_DATAGRAM);
+        try {
+            assertTrue(client.isUdp());
+            client.connect();
+            int lastSequence = -1;
+            for (int i = 0; i < 5; i++) {
+                // A single call sets both axes, so it's a single datagram.
+                client.setControls(i / 10.0, -i / 10.0);
+                ByteBuffer datagram = receive(server);
+                assertEquals(FlightGearClient.CONTROL_DATAGRAM.size(), datagram.remaining());
+                int sequence = datagram.getInt();
+                assertTrue(sequence > lastSequence);
+                lastSequence = sequence;
+                assertEquals((float) (i / 10.0), datagram.getFloat(), 0);
+                assertEquals((float) (-i / 10.0), datagram.getFloat(), 0);
+            }
+            // Nothing else was sent.
+            server.setSoTimeout(200);
+            try {
+                receive(server);
+                fail("An update sent more than one datagram.");
+            } catch (SocketTimeoutException e) {
+                // Expected.
+            }
+        } finally {
+            client.disconnect();
+            server.close();
+        }
+    }
+}
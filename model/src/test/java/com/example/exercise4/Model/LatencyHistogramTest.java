@@ -0,0 +1,37 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1ms - 100ms, one sample each.
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000000L, histogram.getMax());
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue("p50 " + p50, p50 >= 50000000L && p50 <= 50000000L * 1.125);
+        assertTrue("p99 " + p99, p99 >= 99000000L && p99 <= 100000000L);
+        assertEquals(50500000L, histogram.getMean());
+    }
+
+    @Test
+    public void smallAndNegativeDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3000);
+        assertEquals(1000, histogram.getPercentile(50));
+        assertEquals(3000, histogram.getPercentile(100));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+}
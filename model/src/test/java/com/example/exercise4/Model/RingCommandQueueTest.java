@@ -0,0 +1,114 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for RingCommandQueue.
+ */
+public class RingCommandQueueTest {
+
+    private static ByteBuffer ascii(String command) {
+        return ByteBuffer.wrap(command.getBytes());
+    }
+
+    private static String drain(CommandQueue queue) throws InterruptedException {
+        ByteBuffer frame = ByteBuffer.allocate(ConnectionEngine.FRAME_SIZE);
+        queue.drainTo(frame);
+        return new String(frame.array(), 0, frame.position());
+    }
+
+    @Test
+    public void drainTo_keepsOrderAcrossThreadsWithEveryWaitStrategy() throws Exception {
+        for (RingCommandQueue.WaitStrategy strategy : RingCommandQueue.WaitStrategy.values()) {
+            final RingCommandQueue queue = new RingCommandQueue(16, strategy,
+                    RingCommandQueue.Overflow.BLOCK);
+            final int count = 20000;
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread sender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ByteBuffer frame = ByteBuffer.allocate(ConnectionEngine.FRAME_SIZE);
+                    int expected = 0;
+                    try {
+                        while (queue.drainTo(frame) >= 0) {
+                            frame.flip();
+                            while (frame.hasRemaining()) {
+                                assertEquals(expected++, frame.getInt());
+                            }
+                            frame.clear();
+                        }
+                        assertEquals(count, expected);
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            sender.start();
+            ByteBuffer command = ByteBuffer.allocate(4);
+            for (int i = 0; i < count; i++) {
+                command.clear();
+                command.putInt(i).flip();
+                queue.put(null, command);
+            }
+            queue.close();
+            sender.join(10000);
+            assertFalse(strategy + " didn't finish", sender.isAlive());
+            assertNull(strategy + " failed: " + failure.get(), failure.get());
+        }
+    }
+
+    @Test
+    public void put_dropsOldestOrFailsWhenFull() throws Exception {
+        RingCommandQueue dropping = new RingCommandQueue(2,
+                RingCommandQueue.WaitStrategy.BLOCKING, RingCommandQueue.Overflow.DROP_OLDEST);
+        dropping.put(null, ascii("a"));
+        dropping.put(null, ascii("b"));
+        dropping.put(null, ascii("c"));
+        assertEquals(2, dropping.size());
+        assertEquals(1, dropping.getDroppedCount());
+        assertEquals("bc", drain(dropping));
+
+        RingCommandQueue failing = new RingCommandQueue(2,
+                RingCommandQueue.WaitStrategy.BLOCKING, RingCommandQueue.Overflow.FAIL);
+        failing.put(null, ascii("a"));
+        failing.put(null, ascii("b"));
+        try {
+            failing.put(null, ascii("c"));
+            fail("Putting into a full ring should fail.");
+        } catch (IllegalStateException e) {
+            assertEquals("ab", drain(failing));
+        }
+    }
+
+    @Test
+    public void put_blocksUntilTheSenderMakesRoom() throws Exception {
+        final RingCommandQueue queue = new RingCommandQueue(2,
+                RingCommandQueue.WaitStrategy.SPIN_THEN_PARK, RingCommandQueue.Overflow.BLOCK);
+        queue.put(null, ascii("a"));
+        queue.put(null, ascii("b"));
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queue.putAll(null, new ByteBuffer[] {ascii("c"), ascii("d")}, 2);
+            }
+        });
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+        assertEquals("ab", drain(queue));
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals("cd", drain(queue));
+
+        queue.put(null, ascii("e"));
+        queue.clear();
+        assertEquals(0, queue.size());
+        queue.close();
+        assertEquals(-1, queue.drainTo(ByteBuffer.allocate(ConnectionEngine.FRAME_SIZE)));
+    }
+}
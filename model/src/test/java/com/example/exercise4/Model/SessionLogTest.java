@@ -0,0 +1,124 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+/**
+ * Records session logs to temporary files, and reads and replays them back.
+ */
+public class SessionLogTest {
+
+    private static final String[] CONTROLS = {FlightGearClient.AILERON, FlightGearClient.ELEVATOR};
+
+    private static File record(int count) throws Exception {
+        File file = File.createTempFile("session", ".fgs");
+        file.deleteOnExit();
+        SessionRecorder recorder = new SessionRecorder(file);
+        long time = System.nanoTime();
+        double[] values = new double[2];
+        for (int i = 0; i < count; i++) {
+            values[0] = Math.sin(i / 10.0);
+            values[1] = -i / (double) count;
+            recorder.record(time + i * 1000000L, CONTROLS, values, 2);
+        }
+        recorder.record(time + count * 1000000L, "controls/engines/engine/throttle", 0.75);
+        recorder.close();
+        assertNull(recorder.getException());
+        assertEquals(count + 1, recorder.getRecordCount());
+        assertEquals(file.length(), recorder.getByteCount());
+        return file;
+    }
+
+    /**
+     * Commands end with "\n\r", which BufferedReader sees as a line and an empty one.
+     */
+    private static String readCommand(BufferedReader in) throws Exception {
+        String line;
+        do {
+            line = in.readLine();
+        } while (line != null && line.isEmpty());
+        return line;
+    }
+
+    @Test
+    public void reader_readsBackQuantizedValuesAndTimes() throws Exception {
+        File file = record(500);
+        // A few bytes for the time, a byte per index and one to three per value.
+        assertTrue(file.length() < 500 * 10);
+        SessionReader reader = new SessionReader(file);
+        assertEquals(CommandEncoder.DEFAULT_PRECISION, reader.getPrecision());
+        long firstTime = -1;
+        for (int i = 0; i < 500; i++) {
+            assertTrue(reader.next());
+            if (firstTime < 0) {
+                firstTime = reader.getTime();
+            }
+            assertEquals(i * 1000000L, reader.getTime() - firstTime);
+            assertEquals(2, reader.getCount());
+            assertEquals(FlightGearClient.AILERON, reader.getPath(0));
+            assertEquals(FlightGearClient.ELEVATOR, reader.getPath(1));
+            assertEquals(Math.sin(i / 10.0), reader.getValue(0), 0.00005);
+            assertEquals(-i / 500.0, reader.getValue(1), 0.00005);
+        }
+        assertTrue(reader.next());
+        assertEquals(1, reader.getCount());
+        assertEquals("controls/engines/engine/throttle", reader.getPath(0));
+        assertEquals(0.75, reader.getValue(0), 0);
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void reader_stopsAtRecordCutShort() throws Exception {
+        File file = record(10);
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(file.length() - 2);
+        truncated.close();
+        SessionReader reader = new SessionReader(file);
+        int count = 0;
+        while (reader.next()) {
+            count++;
+        }
+        assertEquals(10, count);
+        reader.close();
+    }
+
+    @Test
+    public void replayer_sendsEveryRecordThroughTheClient() throws Exception {
+        File file = record(200);
+        ServerSocket server = new ServerSocket(0);
+        FlightGearClient client = new FlightGearClient(
+                new SocketTransport("127.0.0.1", server.getLocalPort(), 3000), false);
+        try {
+            client.connect();
+            Socket socket = server.accept();
+            SessionReader reader = new SessionReader(file);
+            SessionReplayer replayer = new SessionReplayer(client, reader);
+            replayer.setSpeed(SessionReplayer.MAX_SPEED);
+            replayer.run();
+            reader.close();
+            assertNull(replayer.getException());
+            assertEquals(201, replayer.getReplayedCount());
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            assertEquals("set " + FlightGearClient.AILERON + " 0.0000", readCommand(in));
+            assertEquals("set " + FlightGearClient.ELEVATOR + " 0.0000", readCommand(in));
+            for (int i = 2; i < 400; i++) {
+                assertNotNull(readCommand(in));
+            }
+            assertEquals("set controls/engines/engine/throttle 0.7500", readCommand(in));
+            socket.close();
+        } finally {
+            client.disconnect();
+            server.close();
+        }
+    }
+}
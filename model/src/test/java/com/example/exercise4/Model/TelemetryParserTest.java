@@ -0,0 +1,78 @@
+package com.example.exercise4.Model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TelemetryParserTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(ASCII));
+    }
+
+    private static double parse(String value) {
+        byte[] b = value.getBytes(ASCII);
+        return TelemetryParser.parseValue(b, 0, b.length);
+    }
+
+    @Test
+    public void parsesValues() {
+        assertEquals(0.0, parse("0"), 0);
+        assertEquals(-1.25, parse("-1.25"), 0);
+        assertEquals(3021.5, parse(" 3021.5 "), 0);
+        assertEquals(0.05, parse("0.05"), 0);
+        assertEquals(1.5e-3, parse("1.5E-3"), 0);
+        assertEquals(1, parse("true"), 0);
+        assertEquals(0, parse("false"), 0);
+        assertTrue(Double.isNaN(parse("")));
+        assertTrue(Double.isNaN(parse("-")));
+        assertTrue(Double.isNaN(parse("1.2.3")));
+        assertTrue(Double.isNaN(parse("12e")));
+    }
+
+    @Test
+    public void parsesPropertyResponsesSplitAcrossReads() {
+        TelemetrySnapshot snapshot = new TelemetrySnapshot(
+                "/position/altitude-ft", "controls/flight/aileron");
+        TelemetryParser parser = new TelemetryParser(snapshot, TelemetryParser.Format.PROPERTY);
+        assertTrue(Double.isNaN(snapshot.get(0)));
+
+        parser.feed(bytes("/> /position/altitude-ft = '30"));
+        assertEquals(0, snapshot.getVersion());
+        parser.feed(bytes("21.5' (double)\r\n/> /controls/flight/aileron = '-0.25' (double)\r\n"));
+        parser.feed(bytes("/velocities/airspeed-kt = '120' (double)\r\n"));
+
+        assertEquals(3021.5, snapshot.get(0), 0);
+        assertEquals(-0.25, snapshot.get(1), 0);
+        assertEquals(2, snapshot.getVersion());
+        assertEquals(3, parser.getLineCount());
+        assertEquals(0, parser.getErrorCount());
+    }
+
+    @Test
+    public void parsesCsvRecordsAndNotifiesListeners() {
+        TelemetrySnapshot snapshot = new TelemetrySnapshot("a", "b", "c");
+        final int[] notified = {0};
+        snapshot.addListener(new TelemetrySnapshot.Listener() {
+            @Override
+            public void onTelemetry(TelemetrySnapshot snapshot) {
+                notified[0]++;
+            }
+        });
+        TelemetryParser parser = new TelemetryParser(snapshot, TelemetryParser.Format.CSV);
+
+        parser.feed(bytes("1.5,2,-3\n4,x,6\n"));
+
+        assertEquals(4, snapshot.get(0), 0);
+        assertEquals(2, snapshot.get(1), 0); // Kept from the first record.
+        assertEquals(6, snapshot.get(2), 0);
+        assertEquals(2, notified[0]);
+        assertEquals(1, parser.getErrorCount());
+    }
+}